@@ -1,5 +1,6 @@
 package me.jellysquid.mods.sodium.client.gl.arena;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import me.jellysquid.mods.sodium.client.gl.arena.staging.StagingBuffer;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlBufferUsage;
@@ -21,6 +22,15 @@ public class AsyncBufferArena implements GlBufferArena {
 
     private static final GlBufferUsage BUFFER_USAGE = GlBufferUsage.STATIC_DRAW;
 
+    /**
+     * The arena is shrunk once less than this fraction of it has been used for {@link AsyncBufferArena#SHRINK_DELAY}
+     * checks in a row. It is then shrunk so that about half of it is used, which leaves enough room on either side that
+     * it won't immediately need to grow or shrink again.
+     */
+    private static final float SHRINK_THRESHOLD = 0.25f;
+    private static final int SHRINK_DELAY = 120;
+
+    private final int initialCapacity;
     private final int resizeIncrement;
 
     private final StagingBuffer stagingBuffer;
@@ -31,7 +41,14 @@ public class AsyncBufferArena implements GlBufferArena {
     private int capacity;
     private int used;
 
+    // True if there may be free segments besides the head, which compaction can merge into it
+    private boolean fragmented;
+
+    // The number of checks in a row which found the arena to be using less than the shrink threshold
+    private int lowUsageChecks;
+
     public AsyncBufferArena(CommandList commands, int initialCapacity, StagingBuffer stagingBuffer) {
+        this.initialCapacity = initialCapacity;
         this.resizeIncrement = initialCapacity / 16;
         this.capacity = initialCapacity;
 
@@ -62,6 +79,8 @@ public class AsyncBufferArena implements GlBufferArena {
         this.head = new GlBufferSegment(this, 0, freeBytes);
         this.head.setFree(true);
 
+        this.fragmented = false;
+
         if (usedSegments.isEmpty()) {
             this.head.setNext(null);
         } else {
@@ -239,11 +258,171 @@ public class AsyncBufferArena implements GlBufferArena {
 
         if (prev != null && prev.isFree()) {
             prev.mergeInto(entry);
+            entry = prev;
+        }
+
+        if (entry != this.head) {
+            this.fragmented = true;
         }
 
         this.checkAssertions();
     }
 
+    /**
+     * Moves used segments towards the end of the arena, one at a time starting from the last gap, so that free space
+     * collects in the head segment. This results in the same layout as {@link AsyncBufferArena#resize(CommandList, int)},
+     * but the work can be spread over many frames instead of happening at once when an upload doesn't fit. The buffer
+     * object never changes, so the tessellations which use it remain valid.
+     */
+    @Override
+    public int compact(CommandList commandList, int maxBytes) {
+        if (!this.fragmented) {
+            return 0;
+        }
+
+        List<GlBufferSegment> moved = new ArrayList<>();
+        IntArrayList previousOffsets = new IntArrayList();
+
+        int movedBytes = 0;
+
+        GlBufferSegment seg = this.head;
+
+        while (seg.getNext() != null) {
+            seg = seg.getNext();
+        }
+
+        while (seg != this.head) {
+            GlBufferSegment prev = seg.getPrev();
+
+            // Only free segments which follow a used segment are gaps, and free segments are always merged together
+            if (!seg.isFree() || prev.isFree()) {
+                seg = prev;
+                continue;
+            }
+
+            if (movedBytes > 0 && movedBytes + prev.getLength() > maxBytes) {
+                break;
+            }
+
+            moved.add(prev);
+            previousOffsets.add(prev.getOffset());
+
+            movedBytes += prev.getLength();
+
+            seg = this.swapWithPrevious(seg);
+        }
+
+        if (seg == this.head) {
+            this.fragmented = false;
+        }
+
+        if (!moved.isEmpty()) {
+            this.moveSegments(commandList, moved, previousOffsets, movedBytes);
+        }
+
+        this.checkAssertions();
+
+        return movedBytes;
+    }
+
+    /**
+     * Shrinks the arena towards its initial capacity once its usage has stayed low for long enough. The new capacity
+     * is always a multiple of the resize increment, so that the offsets of segments stay aligned to their elements.
+     */
+    @Override
+    public int shrink(CommandList commandList) {
+        if (this.capacity <= this.initialCapacity || this.used >= this.capacity * SHRINK_THRESHOLD) {
+            this.lowUsageChecks = 0;
+            return 0;
+        }
+
+        if (++this.lowUsageChecks < SHRINK_DELAY) {
+            return 0;
+        }
+
+        this.lowUsageChecks = 0;
+
+        int targetCapacity = ((this.used * 2) + this.resizeIncrement - 1) / this.resizeIncrement * this.resizeIncrement;
+        int newCapacity = Math.max(this.initialCapacity, targetCapacity);
+
+        if (newCapacity >= this.capacity) {
+            return 0;
+        }
+
+        int prevCapacity = this.capacity;
+
+        this.resize(commandList, newCapacity);
+
+        return prevCapacity - newCapacity;
+    }
+
+    /**
+     * Swaps a free segment with the used segment before it, merging the free segment with the one before that if it
+     * is also free.
+     *
+     * @return The free segment, which may have been merged into the segment before it
+     */
+    private GlBufferSegment swapWithPrevious(GlBufferSegment free) {
+        GlBufferSegment used = free.getPrev();
+
+        GlBufferSegment before = used.getPrev();
+        GlBufferSegment after = free.getNext();
+
+        int offset = used.getOffset();
+
+        free.setPrev(before);
+        free.setNext(used);
+        free.setOffset(offset);
+
+        used.setPrev(free);
+        used.setNext(after);
+        used.setOffset(offset + free.getLength());
+
+        if (after != null) {
+            after.setPrev(used);
+        }
+
+        if (before == null) {
+            this.head = free;
+        } else {
+            before.setNext(free);
+
+            if (before.isFree()) {
+                before.mergeInto(free);
+                return before;
+            }
+        }
+
+        return free;
+    }
+
+    /**
+     * Copies the data of the given segments from their previous offsets to their current ones. The old and new ranges
+     * can overlap, which a copy within one buffer can't do, so the data is first copied out into a temporary buffer.
+     */
+    private void moveSegments(CommandList commandList, List<GlBufferSegment> segments, IntArrayList previousOffsets, int length) {
+        GlMutableBuffer tempBuffer = commandList.createMutableBuffer();
+        commandList.allocateStorage(tempBuffer, length, GlBufferUsage.STREAM_COPY);
+
+        int tempOffset = 0;
+
+        for (int i = 0; i < segments.size(); i++) {
+            int segmentLength = segments.get(i).getLength();
+
+            commandList.copyBufferSubData(this.arenaBuffer, tempBuffer, previousOffsets.getInt(i), tempOffset, segmentLength);
+            tempOffset += segmentLength;
+        }
+
+        tempOffset = 0;
+
+        for (GlBufferSegment segment : segments) {
+            commandList.copyBufferSubData(tempBuffer, this.arenaBuffer, tempOffset, segment.getOffset(), segment.getLength());
+            tempOffset += segment.getLength();
+        }
+
+        commandList.deleteBuffer(tempBuffer);
+    }
+
     @Override
     public void delete(CommandList commands) {
         commands.deleteBuffer(this.arenaBuffer);
@@ -327,7 +506,14 @@ public class AsyncBufferArena implements GlBufferArena {
         int elementsNeeded = elementCount - (this.capacity - this.used);
 
         // Try to allocate some extra buffer space unless this is an unusually large allocation
-        this.resize(commandList, Math.max(this.capacity + this.resizeIncrement, this.capacity + elementsNeeded));
+        long newCapacity = (long) this.capacity + Math.max(this.resizeIncrement, elementsNeeded);
+
+        if (newCapacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Arena can't grow beyond " + Integer.MAX_VALUE + " bytes (capacity: " +
+                    this.capacity + ", needed: " + elementsNeeded + ")");
+        }
+
+        this.resize(commandList, (int) newCapacity);
     }
 
     private void checkAssertions() {
@@ -0,0 +1,253 @@
+package me.jellysquid.mods.sodium.client.gl.arena;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
+import me.jellysquid.mods.sodium.client.gl.device.CommandList;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Wraps another arena so that uploads with byte-identical contents share a single segment of the backing arena. Each
+ * shared segment is reference counted, and its storage is only freed once every owner has deleted it.
+ *
+ * To detect duplicates, the contents of every segment are hashed and kept in system memory, so that a hash match can
+ * be confirmed with a byte comparison. The hashing and comparisons are done by the thread which uploads the data. This
+ * makes the arena best suited to data which is small and frequently repeated.
+ */
+public class DeduplicatingBufferArena implements GlBufferArena {
+    private final GlBufferArena backing;
+
+    private final Long2ObjectMap<List<SharedSegment>> segmentsByHash = new Long2ObjectOpenHashMap<>();
+
+    // The number of bytes which would be used by all the segments if they weren't shared
+    private long logicalUsed;
+
+    public DeduplicatingBufferArena(GlBufferArena backing) {
+        this.backing = backing;
+    }
+
+    @Override
+    public int getDeviceUsedMemory() {
+        return this.backing.getDeviceUsedMemory();
+    }
+
+    @Override
+    public int getDeviceAllocatedMemory() {
+        return this.backing.getDeviceAllocatedMemory();
+    }
+
+    /**
+     * @return The number of bytes of device memory which were saved by sharing segments
+     */
+    public long getDeduplicatedMemory() {
+        return this.logicalUsed - this.backing.getDeviceUsedMemory();
+    }
+
+    @Override
+    public void free(GlBufferSegment entry) {
+        SharedSegment segment = (SharedSegment) entry;
+
+        if (segment.refCount <= 0) {
+            throw new IllegalStateException("Already freed");
+        }
+
+        this.logicalUsed -= segment.getLength();
+
+        if (--segment.refCount > 0) {
+            return;
+        }
+
+        List<SharedSegment> candidates = this.segmentsByHash.get(segment.hash);
+        candidates.remove(segment);
+
+        if (candidates.isEmpty()) {
+            this.segmentsByHash.remove(segment.hash);
+        }
+
+        segment.contents.free();
+        segment.backing.delete();
+    }
+
+    @Override
+    public void delete(CommandList commands) {
+        for (List<SharedSegment> candidates : this.segmentsByHash.values()) {
+            for (SharedSegment segment : candidates) {
+                segment.contents.free();
+            }
+        }
+
+        this.segmentsByHash.clear();
+
+        this.backing.delete(commands);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.backing.isEmpty();
+    }
+
+    @Override
+    public GlBuffer getBufferObject() {
+        return this.backing.getBufferObject();
+    }
+
+    @Override
+    public int compact(CommandList commandList, int maxBytes) {
+        return this.backing.compact(commandList, maxBytes);
+    }
+
+    @Override
+    public int shrink(CommandList commandList) {
+        return this.backing.shrink(commandList);
+    }
+
+    @Override
+    public boolean upload(CommandList commandList, Stream<PendingUpload> stream) {
+        List<PendingUpload> uploads = stream.collect(Collectors.toList());
+
+        // The uploads which don't match any existing segment, and the copies of them which are passed to the backing arena
+        List<PendingUpload> unique = new ArrayList<>();
+        LongArrayList uniqueHashes = new LongArrayList();
+        List<PendingUpload> backingUploads = new ArrayList<>();
+
+        // Uploads which match another upload in the same batch, and the index of the unique upload which they match
+        List<PendingUpload> batchDuplicates = new ArrayList<>();
+        IntArrayList batchOriginals = new IntArrayList();
+
+        for (PendingUpload upload : uploads) {
+            ByteBuffer data = upload.getDataBuffer().getDirectBuffer();
+            long hash = hash(data);
+
+            SharedSegment existing = this.find(hash, data);
+
+            if (existing != null) {
+                existing.refCount++;
+                this.logicalUsed += existing.getLength();
+
+                upload.setResult(existing);
+
+                continue;
+            }
+
+            int original = -1;
+
+            for (int i = 0; i < unique.size(); i++) {
+                if (uniqueHashes.getLong(i) == hash && unique.get(i).getDataBuffer().getDirectBuffer().mismatch(data) == -1) {
+                    original = i;
+                    break;
+                }
+            }
+
+            if (original != -1) {
+                batchDuplicates.add(upload);
+                batchOriginals.add(original);
+            } else {
+                unique.add(upload);
+                uniqueHashes.add(hash);
+                backingUploads.add(new PendingUpload(upload.getDataBuffer()));
+            }
+        }
+
+        boolean bufferChanged = false;
+
+        if (!backingUploads.isEmpty()) {
+            bufferChanged = this.backing.upload(commandList, backingUploads.stream());
+        }
+
+        for (int i = 0; i < unique.size(); i++) {
+            PendingUpload upload = unique.get(i);
+
+            SharedSegment segment = new SharedSegment(this, backingUploads.get(i).getResult(),
+                    NativeBuffer.copy(upload.getDataBuffer().getDirectBuffer()), uniqueHashes.getLong(i));
+
+            this.segmentsByHash.computeIfAbsent(segment.hash, k -> new ArrayList<>(1))
+                    .add(segment);
+            this.logicalUsed += segment.getLength();
+
+            upload.setResult(segment);
+        }
+
+        for (int i = 0; i < batchDuplicates.size(); i++) {
+            SharedSegment segment = (SharedSegment) unique.get(batchOriginals.getInt(i)).getResult();
+            segment.refCount++;
+
+            this.logicalUsed += segment.getLength();
+
+            batchDuplicates.get(i).setResult(segment);
+        }
+
+        return bufferChanged;
+    }
+
+    private SharedSegment find(long hash, ByteBuffer data) {
+        List<SharedSegment> candidates = this.segmentsByHash.get(hash);
+
+        if (candidates != null) {
+            for (SharedSegment candidate : candidates) {
+                if (candidate.contents.getDirectBuffer().mismatch(data) == -1) {
+                    return candidate;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static long hash(ByteBuffer data) {
+        long address = MemoryUtil.memAddress(data);
+        int length = data.remaining();
+
+        long hash = length;
+        int i = 0;
+
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            hash = HashCommon.mix(hash ^ MemoryUtil.memGetLong(address + i)) + 0x9E3779B97F4A7C15L;
+        }
+
+        for (; i < length; i++) {
+            hash = HashCommon.mix(hash ^ MemoryUtil.memGetByte(address + i)) + 0x9E3779B97F4A7C15L;
+        }
+
+        return hash;
+    }
+
+    /**
+     * A segment which can be owned by more than one section. Its position is always that of the segment in the backing
+     * arena, which can move when the backing arena is resized.
+     */
+    private static class SharedSegment extends GlBufferSegment {
+        private final GlBufferSegment backing;
+        private final NativeBuffer contents;
+        private final long hash;
+
+        private int refCount = 1;
+
+        private SharedSegment(DeduplicatingBufferArena arena, GlBufferSegment backing, NativeBuffer contents, long hash) {
+            super(arena, backing.getOffset(), backing.getLength());
+
+            this.backing = backing;
+            this.contents = contents;
+            this.hash = hash;
+        }
+
+        @Override
+        public int getOffset() {
+            return this.backing.getOffset();
+        }
+
+        @Override
+        public int getLength() {
+            return this.backing.getLength();
+        }
+    }
+}
@@ -19,4 +19,25 @@ public interface GlBufferArena {
     GlBuffer getBufferObject();
 
     boolean upload(CommandList commandList, Stream<PendingUpload> stream);
+
+    /**
+     * Moves some of the segments in this arena to close the gaps between them, so that free space can be reused without
+     * having to re-allocate the arena. Arenas which can't be compacted in steps do nothing.
+     *
+     * @param maxBytes The number of bytes which can be moved, although at least one segment is always moved if any can be
+     * @return The number of bytes which were moved
+     */
+    default int compact(CommandList commandList, int maxBytes) {
+        return 0;
+    }
+
+    /**
+     * Re-allocates this arena with a smaller capacity if only a small part of it has been used for a while. This
+     * changes the buffer object of the arena, so anything which refers to it must be re-created afterwards.
+     *
+     * @return The number of bytes of device memory which were released
+     */
+    default int shrink(CommandList commandList) {
+        return 0;
+    }
 }
@@ -0,0 +1,416 @@
+package me.jellysquid.mods.sodium.client.gl.arena;
+
+import me.jellysquid.mods.sodium.client.gl.arena.staging.StagingBuffer;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBufferUsage;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlMutableBuffer;
+import me.jellysquid.mods.sodium.client.gl.device.CommandList;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An arena which finds free space with a two-level segregated fit (TLSF) allocator, rather than searching through every
+ * segment in the arena. Free segments are kept in one of many lists based on their size, and a pair of bitmaps tracks
+ * which of those lists are non-empty, so a large enough segment can be found with a few bit operations regardless of how
+ * fragmented the arena is.
+ *
+ * The first level splits sizes by powers of two, and the second level splits each power of two into a number of equally
+ * sized ranges. Requests are rounded up to the next range when searching, so any segment which is found will always be
+ * large enough without having to look at its size.
+ *
+ * Unlike {@link AsyncBufferArena}, this arena does not compact its contents when it grows. The old contents are copied
+ * into the start of the new buffer, and the offsets of existing segments never change.
+ *
+ * Arenas which hold the geometry of many regions can be created to grow geometrically, so that the total amount of data
+ * which is copied while growing stays proportional to the size of the arena.
+ */
+public class TlsfBufferArena implements GlBufferArena {
+    private static final GlBufferUsage BUFFER_USAGE = GlBufferUsage.STATIC_DRAW;
+
+    private static final int SECOND_LEVEL_BITS = 4;
+    private static final int SECOND_LEVEL_COUNT = 1 << SECOND_LEVEL_BITS;
+    private static final int FIRST_LEVEL_COUNT = Integer.SIZE - 1;
+
+    private final int resizeIncrement;
+    private final boolean growGeometrically;
+
+    private final StagingBuffer stagingBuffer;
+    private GlMutableBuffer arenaBuffer;
+
+    // The first segment of the arena, with every other segment following it in order of their offset
+    private FreeListSegment head;
+
+    // The first free segment of each size class, and bitmaps of which size classes have any free segments
+    private final FreeListSegment[] freeLists = new FreeListSegment[FIRST_LEVEL_COUNT * SECOND_LEVEL_COUNT];
+    private final int[] secondLevelBitmaps = new int[FIRST_LEVEL_COUNT];
+    private int firstLevelBitmap;
+
+    private int capacity;
+    private int used;
+
+    public TlsfBufferArena(CommandList commands, int initialCapacity, StagingBuffer stagingBuffer) {
+        this(commands, initialCapacity, stagingBuffer, false);
+    }
+
+    /**
+     * @param growGeometrically True if the arena should double in size when it grows, rather than growing by a fixed
+     *                          fraction of its initial capacity
+     */
+    public TlsfBufferArena(CommandList commands, int initialCapacity, StagingBuffer stagingBuffer, boolean growGeometrically) {
+        this.resizeIncrement = initialCapacity / 16;
+        this.growGeometrically = growGeometrically;
+        this.capacity = initialCapacity;
+
+        this.head = new FreeListSegment(this, 0, initialCapacity);
+        this.head.setFree(true);
+
+        this.insertFree(this.head);
+
+        this.arenaBuffer = commands.createMutableBuffer();
+
+        commands.allocateStorage(this.arenaBuffer, initialCapacity, BUFFER_USAGE);
+
+        this.stagingBuffer = stagingBuffer;
+    }
+
+    @Override
+    public int getDeviceUsedMemory() {
+        return this.used;
+    }
+
+    @Override
+    public int getDeviceAllocatedMemory() {
+        return this.capacity;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.used <= 0;
+    }
+
+    @Override
+    public GlBuffer getBufferObject() {
+        return this.arenaBuffer;
+    }
+
+    @Override
+    public void delete(CommandList commands) {
+        commands.deleteBuffer(this.arenaBuffer);
+    }
+
+    @Override
+    public boolean upload(CommandList commandList, Stream<PendingUpload> stream) {
+        // Record the buffer object before we start any work
+        // If the arena needs to re-allocate a buffer, this will allow us to check and return an appropriate flag
+        GlBuffer buffer = this.arenaBuffer;
+
+        List<PendingUpload> queue = stream.collect(Collectors.toList());
+
+        // Try to upload all of the data into free segments first
+        List<PendingUpload> remaining = this.tryUploads(commandList, queue);
+
+        // If we weren't able to upload some buffers, grow the arena by at least as much as they need. The new space
+        // forms one continuous free segment at the end of the arena, so every remaining upload is guaranteed to fit.
+        if (!remaining.isEmpty()) {
+            int remainingBytes = remaining.stream()
+                    .mapToInt(PendingUpload::getLength)
+                    .sum();
+
+            this.resize(commandList, this.getGrownCapacity(remainingBytes));
+
+            if (!this.tryUploads(commandList, remaining).isEmpty()) {
+                throw new RuntimeException("Failed to upload all buffers");
+            }
+        }
+
+        return this.arenaBuffer != buffer;
+    }
+
+    /**
+     * @return The uploads which could not fit in the arena
+     */
+    private List<PendingUpload> tryUploads(CommandList commandList, List<PendingUpload> queue) {
+        List<PendingUpload> remaining = new ArrayList<>();
+
+        for (PendingUpload upload : queue) {
+            if (!this.tryUpload(commandList, upload)) {
+                remaining.add(upload);
+            }
+        }
+
+        this.stagingBuffer.flush(commandList);
+
+        return remaining;
+    }
+
+    private boolean tryUpload(CommandList commandList, PendingUpload upload) {
+        ByteBuffer data = upload.getDataBuffer()
+                .getDirectBuffer();
+
+        GlBufferSegment dst = this.alloc(data.remaining());
+
+        if (dst == null) {
+            return false;
+        }
+
+        // Copy the data into our staging buffer, then copy it into the arena's buffer
+        this.stagingBuffer.enqueueCopy(commandList, data, this.arenaBuffer, dst.getOffset());
+
+        upload.setResult(dst);
+
+        return true;
+    }
+
+    /**
+     * @return The capacity which the arena should grow to in order to fit the given number of additional bytes
+     * @throws IllegalStateException If the arena would need to grow larger than the maximum size of a buffer
+     */
+    private int getGrownCapacity(int bytesNeeded) {
+        long minCapacity = (long) this.capacity + Math.max(this.resizeIncrement, bytesNeeded);
+
+        if (minCapacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Arena can't grow beyond " + Integer.MAX_VALUE + " bytes (capacity: " +
+                    this.capacity + ", needed: " + bytesNeeded + ")");
+        }
+
+        if (this.growGeometrically) {
+            long doubledCapacity = this.capacity * 2L;
+
+            // Close to the limit, only grow by as much as is needed
+            if (doubledCapacity > minCapacity && doubledCapacity <= Integer.MAX_VALUE) {
+                return (int) doubledCapacity;
+            }
+        }
+
+        return (int) minCapacity;
+    }
+
+    private void resize(CommandList commandList, int newCapacity) {
+        GlMutableBuffer srcBufferObj = this.arenaBuffer;
+        GlMutableBuffer dstBufferObj = commandList.createMutableBuffer();
+
+        commandList.allocateStorage(dstBufferObj, newCapacity, BUFFER_USAGE);
+        commandList.copyBufferSubData(srcBufferObj, dstBufferObj, 0, 0, this.capacity);
+        commandList.deleteBuffer(srcBufferObj);
+
+        this.arenaBuffer = dstBufferObj;
+
+        // Add the new space to the end of the arena, merging it with the last segment if that is free
+        FreeListSegment tail = this.head;
+
+        while (tail.getNext() != null) {
+            tail = (FreeListSegment) tail.getNext();
+        }
+
+        int added = newCapacity - this.capacity;
+
+        if (tail.isFree()) {
+            this.removeFree(tail);
+            tail.setLength(tail.getLength() + added);
+        } else {
+            FreeListSegment segment = new FreeListSegment(this, this.capacity, added);
+            segment.setFree(true);
+            segment.setPrev(tail);
+
+            tail.setNext(segment);
+            tail = segment;
+        }
+
+        this.insertFree(tail);
+
+        this.capacity = newCapacity;
+    }
+
+    private GlBufferSegment alloc(int size) {
+        FreeListSegment segment = this.findFree(size);
+
+        if (segment == null) {
+            return null;
+        }
+
+        this.removeFree(segment);
+
+        // Return the space which isn't needed to the free lists
+        if (segment.getLength() > size) {
+            FreeListSegment remainder = new FreeListSegment(this, segment.getOffset() + size, segment.getLength() - size);
+            remainder.setFree(true);
+            remainder.setPrev(segment);
+            remainder.setNext(segment.getNext());
+
+            if (remainder.getNext() != null) {
+                remainder.getNext()
+                        .setPrev(remainder);
+            }
+
+            segment.setNext(remainder);
+            segment.setLength(size);
+
+            this.insertFree(remainder);
+        }
+
+        segment.setFree(false);
+
+        this.used += size;
+
+        return segment;
+    }
+
+    @Override
+    public void free(GlBufferSegment entry) {
+        if (entry.isFree()) {
+            throw new IllegalStateException("Already freed");
+        }
+
+        FreeListSegment segment = (FreeListSegment) entry;
+        segment.setFree(true);
+
+        this.used -= segment.getLength();
+
+        FreeListSegment next = (FreeListSegment) segment.getNext();
+
+        if (next != null && next.isFree()) {
+            this.removeFree(next);
+            segment.mergeInto(next);
+        }
+
+        FreeListSegment prev = (FreeListSegment) segment.getPrev();
+
+        if (prev != null && prev.isFree()) {
+            this.removeFree(prev);
+            prev.mergeInto(segment);
+
+            segment = prev;
+        }
+
+        this.insertFree(segment);
+    }
+
+    private FreeListSegment findFree(int size) {
+        // Round the size up to the next size class, so that every segment in the class which is found is large enough
+        int roundedSize = size;
+        int firstLevel = getFirstLevel(size);
+
+        if (firstLevel >= SECOND_LEVEL_BITS) {
+            roundedSize += (1 << (firstLevel - SECOND_LEVEL_BITS)) - 1;
+        }
+
+        // The rounded size can overflow for requests which are within a size class of the largest possible size
+        if (roundedSize > 0) {
+            FreeListSegment segment = this.findFreeInClassOrAbove(getFirstLevel(roundedSize), getSecondLevel(roundedSize));
+
+            if (segment != null) {
+                return segment;
+            }
+        }
+
+        // The only segments which can still be large enough are those in the same size class as the request itself
+        FreeListSegment segment = this.freeLists[getIndex(firstLevel, getSecondLevel(size))];
+
+        while (segment != null) {
+            if (segment.getLength() >= size) {
+                return segment;
+            }
+
+            segment = segment.freeNext;
+        }
+
+        return null;
+    }
+
+    private FreeListSegment findFreeInClassOrAbove(int firstLevel, int secondLevel) {
+        int secondLevelMap = this.secondLevelBitmaps[firstLevel] & (-1 << secondLevel);
+
+        if (secondLevelMap == 0) {
+            int firstLevelMap = firstLevel + 1 < FIRST_LEVEL_COUNT ? this.firstLevelBitmap & (-1 << (firstLevel + 1)) : 0;
+
+            if (firstLevelMap == 0) {
+                return null;
+            }
+
+            firstLevel = Integer.numberOfTrailingZeros(firstLevelMap);
+            secondLevelMap = this.secondLevelBitmaps[firstLevel];
+        }
+
+        return this.freeLists[getIndex(firstLevel, Integer.numberOfTrailingZeros(secondLevelMap))];
+    }
+
+    private void insertFree(FreeListSegment segment) {
+        int firstLevel = getFirstLevel(segment.getLength());
+        int secondLevel = getSecondLevel(segment.getLength());
+        int index = getIndex(firstLevel, secondLevel);
+
+        FreeListSegment head = this.freeLists[index];
+
+        segment.freePrev = null;
+        segment.freeNext = head;
+
+        if (head != null) {
+            head.freePrev = segment;
+        }
+
+        this.freeLists[index] = segment;
+
+        this.firstLevelBitmap |= 1 << firstLevel;
+        this.secondLevelBitmaps[firstLevel] |= 1 << secondLevel;
+    }
+
+    private void removeFree(FreeListSegment segment) {
+        int firstLevel = getFirstLevel(segment.getLength());
+        int secondLevel = getSecondLevel(segment.getLength());
+        int index = getIndex(firstLevel, secondLevel);
+
+        if (segment.freePrev != null) {
+            segment.freePrev.freeNext = segment.freeNext;
+        } else {
+            this.freeLists[index] = segment.freeNext;
+        }
+
+        if (segment.freeNext != null) {
+            segment.freeNext.freePrev = segment.freePrev;
+        }
+
+        segment.freePrev = null;
+        segment.freeNext = null;
+
+        if (this.freeLists[index] == null) {
+            this.secondLevelBitmaps[firstLevel] &= ~(1 << secondLevel);
+
+            if (this.secondLevelBitmaps[firstLevel] == 0) {
+                this.firstLevelBitmap &= ~(1 << firstLevel);
+            }
+        }
+    }
+
+    private static int getFirstLevel(int size) {
+        return 31 - Integer.numberOfLeadingZeros(size);
+    }
+
+    private static int getSecondLevel(int size) {
+        int firstLevel = getFirstLevel(size);
+
+        // Sizes smaller than the number of second level classes each get a class of their own
+        if (firstLevel < SECOND_LEVEL_BITS) {
+            return (size << (SECOND_LEVEL_BITS - firstLevel)) & (SECOND_LEVEL_COUNT - 1);
+        }
+
+        return (size >>> (firstLevel - SECOND_LEVEL_BITS)) & (SECOND_LEVEL_COUNT - 1);
+    }
+
+    private static int getIndex(int firstLevel, int secondLevel) {
+        return (firstLevel * SECOND_LEVEL_COUNT) + secondLevel;
+    }
+
+    private static class FreeListSegment extends GlBufferSegment {
+        // The neighbouring segments in the free list of this segment's size class, if it is free
+        private FreeListSegment freeNext;
+        private FreeListSegment freePrev;
+
+        private FreeListSegment(TlsfBufferArena arena, int offset, int length) {
+            super(arena, offset, length);
+        }
+    }
+}
@@ -2,7 +2,9 @@ package me.jellysquid.mods.sodium.client.gl.compile;
 
 import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkMeshCache;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManager;
+import me.jellysquid.mods.sodium.client.render.pipeline.BlockRenderInfoCache;
 import me.jellysquid.mods.sodium.client.render.pipeline.context.ChunkRenderCacheLocal;
 import net.minecraft.client.Minecraft;
 import net.minecraft.world.level.Level;
@@ -10,10 +12,13 @@ import net.minecraft.world.level.Level;
 public class ChunkBuildContext {
     public final ChunkBuildBuffers buffers;
     public final ChunkRenderCacheLocal cache;
+    public final ChunkMeshCache meshCache;
 
-    public ChunkBuildContext(Level world, ChunkVertexType vertexType, BlockRenderPassManager renderPassManager) {
+    public ChunkBuildContext(Level world, ChunkVertexType vertexType, BlockRenderPassManager renderPassManager, BlockRenderInfoCache blockRenderInfo,
+                             ChunkMeshCache meshCache) {
         this.buffers = new ChunkBuildBuffers(vertexType, renderPassManager);
-        this.cache = new ChunkRenderCacheLocal(Minecraft.getInstance(), world);
+        this.cache = new ChunkRenderCacheLocal(Minecraft.getInstance(), world, blockRenderInfo);
+        this.meshCache = meshCache;
     }
 
     public void release() {
@@ -1,5 +1,6 @@
 package me.jellysquid.mods.sodium.client.gl.device;
 
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
 import me.jellysquid.mods.sodium.client.gl.tessellation.GlIndexType;
 import org.lwjgl.PointerBuffer;
 
@@ -8,6 +9,17 @@ import java.nio.IntBuffer;
 public interface DrawCommandList extends AutoCloseable {
     void multiDrawElementsBaseVertex(PointerBuffer pointer, IntBuffer count, IntBuffer baseVertex, GlIndexType indexType);
 
+    /**
+     * Submits draw commands which are read by the device from a buffer, with each command being laid out as a
+     * {@code DrawElementsIndirectCommand} structure. Requires OpenGL 4.3 or ARB_multi_draw_indirect.
+     *
+     * @param buffer The buffer containing the draw commands
+     * @param offset The offset of the first command in the buffer, in bytes
+     * @param drawCount The number of draw commands to submit
+     * @param stride The distance between each draw command, in bytes
+     */
+    void multiDrawElementsIndirect(GlBuffer buffer, long offset, int drawCount, int stride, GlIndexType indexType);
+
     void endTessellating();
 
     void flush();
@@ -272,6 +272,17 @@ public class GLRenderDevice implements RenderDevice {
             GL32C.glMultiDrawElementsBaseVertex(primitiveType.getId(), count, indexType.getFormatId(), pointer, baseVertex);
         }
 
+        @Override
+        public void multiDrawElementsIndirect(GlBuffer buffer, long offset, int drawCount, int stride, GlIndexType indexType) {
+            GlPrimitiveType primitiveType = GLRenderDevice.this.activeTessellation.getPrimitiveType();
+
+            // The draw indirect binding isn't tracked by the state tracker, as the target doesn't exist in the older
+            // contexts which it has to be able to query. Nothing else uses the binding, so it is simply reset afterwards.
+            GL15C.glBindBuffer(GL40C.GL_DRAW_INDIRECT_BUFFER, buffer.handle());
+            GL43C.glMultiDrawElementsIndirect(primitiveType.getId(), indexType.getFormatId(), offset, drawCount, stride);
+            GL15C.glBindBuffer(GL40C.GL_DRAW_INDIRECT_BUFFER, 0);
+        }
+
         @Override
         public void endTessellating() {
             GLRenderDevice.this.activeTessellation.unbind(GLRenderDevice.this.commandList);
@@ -3,6 +3,7 @@ package me.jellysquid.mods.sodium.client.gl.tessellation;
 import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexAttributeBinding;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 import org.lwjgl.opengl.GL20C;
+import org.lwjgl.opengl.GL33C;
 
 public abstract class GlAbstractTessellation implements GlTessellation {
     protected final GlPrimitiveType primitiveType;
@@ -26,6 +27,10 @@ public abstract class GlAbstractTessellation implements GlTessellation {
                 GL20C.glVertexAttribPointer(attrib.getIndex(), attrib.getCount(), attrib.getFormat(), attrib.isNormalized(),
                         attrib.getStride(), attrib.getPointer());
                 GL20C.glEnableVertexAttribArray(attrib.getIndex());
+
+                if (attrib.getDivisor() != 0) {
+                    GL33C.glVertexAttribDivisor(attrib.getIndex(), attrib.getDivisor());
+                }
             }
         }
     }
@@ -0,0 +1,69 @@
+package me.jellysquid.mods.sodium.client.gl.util;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides a growable queue of {@code DrawElementsIndirectCommand} structures, which can be uploaded to a buffer and
+ * submitted with {@link org.lwjgl.opengl.GL43C#glMultiDrawElementsIndirect(int, int, long, int, int)}.
+ */
+public class IndirectCommandBatch {
+    // The size of each command in bytes, which is made up of five 32-bit integers
+    public static final int COMMAND_STRIDE = 5 * 4;
+
+    private ByteBuffer buffer;
+    private int count;
+
+    public IndirectCommandBatch(int initialCapacity) {
+        this.buffer = MemoryUtil.memAlloc(initialCapacity * COMMAND_STRIDE);
+    }
+
+    public void begin() {
+        this.buffer.clear();
+        this.count = 0;
+    }
+
+    /**
+     * @param count The number of indices to draw
+     * @param firstIndex The index of the first element in the element buffer, which is not a byte offset
+     * @param baseVertex The value to add to each index before fetching the vertex
+     * @param baseInstance The first instance to draw, which offsets the fetching of instanced attributes
+     */
+    public void add(int count, int firstIndex, int baseVertex, int baseInstance) {
+        if (this.buffer.remaining() < COMMAND_STRIDE) {
+            this.buffer = MemoryUtil.memRealloc(this.buffer, this.buffer.capacity() * 2);
+        }
+
+        this.buffer.putInt(count);
+        this.buffer.putInt(1); // instance count
+        this.buffer.putInt(firstIndex);
+        this.buffer.putInt(baseVertex);
+        this.buffer.putInt(baseInstance);
+
+        this.count++;
+    }
+
+    public void end() {
+        this.buffer.flip();
+    }
+
+    /**
+     * @return The commands which were added to the batch, which is only valid after the batch has ended
+     */
+    public ByteBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    public int getCount() {
+        return this.count;
+    }
+
+    public boolean isEmpty() {
+        return this.count <= 0;
+    }
+
+    public void delete() {
+        MemoryUtil.memFree(this.buffer);
+    }
+}
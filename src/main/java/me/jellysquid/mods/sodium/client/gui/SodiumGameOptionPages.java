@@ -13,6 +13,7 @@ import me.jellysquid.mods.sodium.client.gui.options.control.SliderControl;
 import me.jellysquid.mods.sodium.client.gui.options.control.TickBoxControl;
 import me.jellysquid.mods.sodium.client.gui.options.storage.MinecraftOptionsStorage;
 import me.jellysquid.mods.sodium.client.gui.options.storage.SodiumOptionsStorage;
+import me.jellysquid.mods.sodium.client.render.chunk.IndirectChunkRenderer;
 import net.minecraft.client.Option;
 import net.minecraft.client.*;
 import net.minecraft.network.chat.Component;
@@ -279,6 +280,24 @@ public class SodiumGameOptionPages {
                         .setFlags(OptionFlag.REQUIRES_RENDERER_UPDATE)
                         .build()
                 )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableComponent("sodium.options.use_incremental_graph_traversal.name"))
+                        .setTooltip(new TranslatableComponent("sodium.options.use_incremental_graph_traversal.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.performance.useIncrementalGraphTraversal = value, opts -> opts.performance.useIncrementalGraphTraversal)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_UPDATE)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableComponent("sodium.options.use_parallel_graph_traversal.name"))
+                        .setTooltip(new TranslatableComponent("sodium.options.use_parallel_graph_traversal.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.performance.useParallelGraphTraversal = value, opts -> opts.performance.useParallelGraphTraversal)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
                 .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
                         .setName(new TranslatableComponent("sodium.options.use_entity_culling.name"))
                         .setTooltip(new TranslatableComponent("sodium.options.use_entity_culling.tooltip"))
@@ -318,10 +337,42 @@ public class SodiumGameOptionPages {
                         .setTooltip(new TranslatableComponent("sodium.options.chunk_memory_allocator.tooltip"))
                         .setControl(option -> new CyclingControl<>(option, SodiumGameOptions.ArenaMemoryAllocator.class))
                         .setImpact(OptionImpact.HIGH)
+                        // The multi-draw indirect renderer's shared arenas always use the TLSF allocator
+                        .setEnabled(!(sodiumOpts.getData().advanced.useMultiDrawIndirect && IndirectChunkRenderer.isSupported(RenderDevice.INSTANCE)))
                         .setBinding((opts, value) -> opts.advanced.arenaMemoryAllocator = value, opts -> opts.advanced.arenaMemoryAllocator)
                         .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
                         .build()
                 )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableComponent("sodium.options.deduplicate_mesh_data.name"))
+                        .setTooltip(new TranslatableComponent("sodium.options.deduplicate_mesh_data.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.LOW)
+                        // Only index data is deduplicated, which chunks don't have when they share quad indices
+                        .setEnabled(!sodiumOpts.getData().advanced.useSharedQuadIndices)
+                        .setBinding((opts, value) -> opts.advanced.deduplicateMeshData = value, opts -> opts.advanced.deduplicateMeshData)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableComponent("sodium.options.use_multidraw_indirect.name"))
+                        .setTooltip(new TranslatableComponent("sodium.options.use_multidraw_indirect.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setEnabled(IndirectChunkRenderer.isSupported(RenderDevice.INSTANCE))
+                        .setBinding((opts, value) -> opts.advanced.useMultiDrawIndirect = value, opts -> opts.advanced.useMultiDrawIndirect)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableComponent("sodium.options.use_shared_quad_indices.name"))
+                        .setTooltip(new TranslatableComponent("sodium.options.use_shared_quad_indices.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.useSharedQuadIndices = value, opts -> opts.advanced.useSharedQuadIndices)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
                 .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
                         .setName(new TranslatableComponent("sodium.options.use_persistent_mapping.name"))
                         .setTooltip(new TranslatableComponent("sodium.options.use_persistent_mapping.tooltip"))
@@ -342,6 +393,33 @@ public class SodiumGameOptionPages {
                         .setBinding((opts, value) -> opts.advanced.cpuRenderAheadLimit = value, opts -> opts.advanced.cpuRenderAheadLimit)
                         .build()
                 )
+                .add(OptionImpl.createBuilder(int.class, sodiumOpts)
+                        .setName(new TranslatableComponent("sodium.options.chunk_clone_cache_size.name"))
+                        .setTooltip(new TranslatableComponent("sodium.options.chunk_clone_cache_size.tooltip"))
+                        .setControl(opt -> new SliderControl(opt, 16, 512, 16, ControlValueFormatter.translateVariable("sodium.options.chunk_clone_cache_size.value")))
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.chunkCloneCacheSize = value, opts -> opts.advanced.chunkCloneCacheSize)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(int.class, sodiumOpts)
+                        .setName(new TranslatableComponent("sodium.options.chunk_mesh_cache_size.name"))
+                        .setTooltip(new TranslatableComponent("sodium.options.chunk_mesh_cache_size.tooltip"))
+                        .setControl(opt -> new SliderControl(opt, 0, 512, 16, ControlValueFormatter.translateVariableOrDisabled("sodium.options.chunk_mesh_cache_size.value")))
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.chunkMeshCacheSize = value, opts -> opts.advanced.chunkMeshCacheSize)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableComponent("sodium.options.use_chunk_mesh_disk_cache.name"))
+                        .setTooltip(new TranslatableComponent("sodium.options.use_chunk_mesh_disk_cache.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.useChunkMeshDiskCache = value, opts -> opts.advanced.useChunkMeshDiskCache)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
                 .build());
 
         groups.add(OptionGroup.createBuilder()
@@ -44,17 +44,26 @@ public class SodiumGameOptions {
         public boolean useEntityCulling = true;
         public boolean useParticleCulling = true;
         public boolean useFogOcclusion = true;
+        public boolean useIncrementalGraphTraversal = true;
+        public boolean useParallelGraphTraversal = true;
         public boolean useBlockFaceCulling = true;
     }
 
     public static class AdvancedSettings {
         public ArenaMemoryAllocator arenaMemoryAllocator = null;
+        public boolean deduplicateMeshData = false;
+        public boolean useMultiDrawIndirect = false;
+        public boolean useSharedQuadIndices = false;
 
         public boolean allowDirectMemoryAccess = true;
         public boolean enableMemoryTracing = false;
         public boolean useAdvancedStagingBuffers = true;
 
         public int cpuRenderAheadLimit = 3;
+
+        public int chunkCloneCacheSize = 64;
+        public int chunkMeshCacheSize = 64;
+        public boolean useChunkMeshDiskCache = false;
     }
 
     public static class QualitySettings {
@@ -70,7 +79,8 @@ public class SodiumGameOptions {
 
     public enum ArenaMemoryAllocator implements TextProvider {
         ASYNC("sodium.options.chunk_memory_allocator.async"),
-        SWAP("sodium.options.chunk_memory_allocator.swap");
+        SWAP("sodium.options.chunk_memory_allocator.swap"),
+        TLSF("sodium.options.chunk_memory_allocator.tlsf");
 
         private final Component name;
 
@@ -45,6 +45,10 @@ public interface ControlValueFormatter {
         return (v) -> v == 0 ? disableText : v + " " + name;
     }
 
+    static ControlValueFormatter translateVariableOrDisabled(String key) {
+        return (v) -> (v == 0) ? new TranslatableComponent("options.off").getString() : new TranslatableComponent(key, v).getString();
+    }
+
     static ControlValueFormatter number() {
         return String::valueOf;
     }
@@ -20,6 +20,22 @@ public class IndexBufferBuilder {
         }
     }
 
+    /**
+     * Adds a range of indices from another index buffer, offsetting each of them by the given amount.
+     */
+    public void add(int[] indices, int from, int to, int offset) {
+        for (int i = from; i < to; i++) {
+            this.indices.add(indices[i] + offset);
+        }
+    }
+
+    /**
+     * @return A copy of the indices which have been added since the last call to {@link IndexBufferBuilder#start()}
+     */
+    public int[] toArray() {
+        return this.indices.toIntArray();
+    }
+
     public void start() {
         this.indices.clear();
     }
@@ -92,6 +108,49 @@ public class IndexBufferBuilder {
             return pointer;
         }
 
+        /**
+         * Copies the vertices of each quad into the destination buffer, in an order which allows the quad to be drawn with
+         * the indices 0, 1, 2, 2, 3, 0 relative to its first vertex (see
+         * {@link me.jellysquid.mods.sodium.client.render.chunk.SharedQuadIndexBuffer}). Vertices which are used by
+         * more than one quad are copied once for each quad.
+         *
+         * @param src The vertex data which the indices of this buffer refer to
+         * @param dst The buffer to copy the vertices into
+         * @param offset The byte offset in the destination buffer to start copying to
+         * @param stride The size of each vertex in bytes
+         * @return The byte offset in the destination buffer after the last vertex
+         */
+        public int writeQuadVertices(ByteBuffer src, ByteBuffer dst, int offset, int stride) {
+            int pointer = offset;
+
+            for (int i = 0; i + 6 <= this.indices.size(); i += 6) {
+                int i0 = this.indices.getInt(i);
+                int i1 = this.indices.getInt(i + 1);
+                int i2 = this.indices.getInt(i + 2);
+
+                // The first triangle is kept as-is, and the second triangle always shares two of its vertices, so the
+                // vertex which is unique to the second triangle completes the quad
+                int i3 = i0;
+
+                for (int j = i + 3; j < i + 6; j++) {
+                    int index = this.indices.getInt(j);
+
+                    if (index != i0 && index != i1 && index != i2) {
+                        i3 = index;
+                    }
+                }
+
+                dst.put(pointer, src, i0 * stride, stride);
+                dst.put(pointer + stride, src, i1 * stride, stride);
+                dst.put(pointer + (stride * 2), src, i2 * stride, stride);
+                dst.put(pointer + (stride * 3), src, i3 * stride, stride);
+
+                pointer += stride * 4;
+            }
+
+            return pointer;
+        }
+
         public int getByteSize() {
             return this.indices.size() * this.format.getStride();
         }
@@ -4,6 +4,8 @@ import me.jellysquid.mods.sodium.client.gl.attribute.BufferVertexFormat;
 import me.jellysquid.mods.sodium.client.model.vertex.VertexSink;
 import me.jellysquid.mods.sodium.client.model.vertex.type.BufferVertexType;
 
+import java.nio.ByteBuffer;
+
 /**
  * Base implementation of a {@link VertexSink} which writes into a {@link VertexBufferView} directly.
  */
@@ -39,6 +41,27 @@ public abstract class VertexBufferWriter implements VertexSink {
         this.vertexCount = 0;
     }
 
+    /**
+     * Copies vertices which are already encoded in this writer's format into the backing storage. Any vertices which
+     * have been written but not yet flushed are flushed first.
+     *
+     * @param src The buffer containing the encoded vertices
+     * @param offset The byte offset of the first vertex in the buffer
+     * @param count The number of vertices to copy
+     */
+    public void copyVertices(ByteBuffer src, int offset, int count) {
+        this.flush();
+        this.backingBuffer.ensureBufferCapacity(count * this.vertexStride);
+
+        ByteBuffer dst = this.backingBuffer.getDirectBuffer();
+        dst.put(this.backingBuffer.getWriterPosition(), src, offset, count * this.vertexStride);
+
+        this.backingBuffer.flush(count, this.vertexFormat);
+        this.vertexCountFlushed += count;
+
+        this.onBufferStorageChanged();
+    }
+
     /**
      * Advances the write pointer forward by the stride of one vertex. This should always be called after a
      * vertex is written. Implementations which override this should always call invoke the super implementation.
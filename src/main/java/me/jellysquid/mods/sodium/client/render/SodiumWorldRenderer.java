@@ -151,7 +151,7 @@ public class SodiumWorldRenderer {
     public void scheduleTerrainUpdate() {
         // BUG: seems to be called before init
         if (this.renderSectionManager != null) {
-            this.renderSectionManager.markGraphDirty();
+            this.renderSectionManager.invalidateGraph();
         }
     }
 
@@ -394,6 +394,20 @@ public class SodiumWorldRenderer {
         this.scheduleRebuildForChunks(minX >> 4, minY >> 4, minZ >> 4, maxX >> 4, maxY >> 4, maxZ >> 4, important);
     }
 
+    /**
+     * Schedules chunk rebuilds for all chunks within the given radius of a single changed block. Since only one block
+     * has changed, the rebuilds may only need to re-mesh the blocks around it.
+     */
+    public void scheduleRebuildForBlock(int x, int y, int z, int radius, boolean important) {
+        for (int chunkX = (x - radius) >> 4; chunkX <= (x + radius) >> 4; chunkX++) {
+            for (int chunkY = (y - radius) >> 4; chunkY <= (y + radius) >> 4; chunkY++) {
+                for (int chunkZ = (z - radius) >> 4; chunkZ <= (z + radius) >> 4; chunkZ++) {
+                    this.renderSectionManager.scheduleBlockRebuild(chunkX, chunkY, chunkZ, x, y, z, important);
+                }
+            }
+        }
+    }
+
     /**
      * Schedules chunk rebuilds for all chunks in the specified chunk region.
      */
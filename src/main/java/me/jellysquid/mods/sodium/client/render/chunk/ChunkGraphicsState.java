@@ -10,13 +10,14 @@ import java.util.Map;
 
 public class ChunkGraphicsState {
     private final GlBufferSegment vertexSegment;
+
+    // The segment containing the index data of the section, or null if it is drawn with the shared quad index buffer
     private final GlBufferSegment indexSegment;
 
     private final ElementRange[] parts;
 
     public ChunkGraphicsState(GlBufferSegment vertexSegment, GlBufferSegment indexSegment, ChunkMeshData data) {
         Validate.notNull(vertexSegment);
-        Validate.notNull(indexSegment);
 
         this.vertexSegment = vertexSegment;
         this.indexSegment = indexSegment;
@@ -30,7 +31,10 @@ public class ChunkGraphicsState {
 
     public void delete() {
         this.vertexSegment.delete();
-        this.indexSegment.delete();
+
+        if (this.indexSegment != null) {
+            this.indexSegment.delete();
+        }
     }
 
     public ElementRange getModelPart(ModelQuadFacing facing) {
@@ -44,4 +48,11 @@ public class ChunkGraphicsState {
     public GlBufferSegment getIndexSegment() {
         return this.indexSegment;
     }
+
+    /**
+     * @return The byte offset of the section's index data in the index buffer of its region
+     */
+    public int getIndexOffset() {
+        return this.indexSegment != null ? this.indexSegment.getOffset() : 0;
+    }
 }
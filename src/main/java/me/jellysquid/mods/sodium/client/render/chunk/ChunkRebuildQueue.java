@@ -0,0 +1,110 @@
+package me.jellysquid.mods.sodium.client.render.chunk;
+
+/**
+ * A queue of sections which are waiting to be rebuilt, which holds at most a given number of sections. Sections are
+ * dequeued in order of their priority, where lower values are rebuilt first. Once the queue is full, adding a section
+ * with a better priority than the worst queued section evicts that section, so the queue always holds the best sections
+ * which were added to it, regardless of the order in which they were found.
+ *
+ * The priority of each section is only computed once when it is added, and the queue is small enough that keeping the
+ * sections in sorted order is cheaper than maintaining a double-ended heap.
+ */
+public class ChunkRebuildQueue {
+    // Sorted from the worst priority at the start of the array to the best priority at the end
+    private final RenderSection[] sections;
+    private final float[] priorities;
+
+    private int size;
+
+    public ChunkRebuildQueue(int maxCapacity) {
+        this.sections = new RenderSection[maxCapacity];
+        this.priorities = new float[maxCapacity];
+    }
+
+    /**
+     * Adds a section to the queue, evicting the worst queued sections if the queue would hold more than the given
+     * number of sections.
+     *
+     * @return False if the section's priority was too low for it to be added to the full queue
+     */
+    public boolean enqueue(RenderSection section, float priority, int capacity) {
+        capacity = Math.min(capacity, this.sections.length);
+
+        while (this.size > capacity) {
+            this.removeWorst();
+        }
+
+        if (this.size >= capacity) {
+            if (capacity <= 0 || priority >= this.priorities[0]) {
+                return false;
+            }
+
+            this.removeWorst();
+        }
+
+        // Find the first index which has a better priority than the section, so that sections with equal priorities
+        // are dequeued in the order they were added
+        int low = 0;
+        int high = this.size;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (this.priorities[mid] >= priority) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        System.arraycopy(this.sections, low, this.sections, low + 1, this.size - low);
+        System.arraycopy(this.priorities, low, this.priorities, low + 1, this.size - low);
+
+        this.sections[low] = section;
+        this.priorities[low] = priority;
+        this.size++;
+
+        return true;
+    }
+
+    /**
+     * Removes and returns the section with the best priority.
+     */
+    public RenderSection dequeue() {
+        if (this.size <= 0) {
+            throw new IllegalStateException("Queue is empty");
+        }
+
+        int index = --this.size;
+
+        RenderSection section = this.sections[index];
+        this.sections[index] = null;
+
+        return section;
+    }
+
+    private void removeWorst() {
+        this.size--;
+
+        System.arraycopy(this.sections, 1, this.sections, 0, this.size);
+        System.arraycopy(this.priorities, 1, this.priorities, 0, this.size);
+
+        this.sections[this.size] = null;
+    }
+
+    public boolean isEmpty() {
+        return this.size <= 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.sections[i] = null;
+        }
+
+        this.size = 0;
+    }
+}
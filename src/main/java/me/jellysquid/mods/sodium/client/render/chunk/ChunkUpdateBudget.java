@@ -0,0 +1,132 @@
+package me.jellysquid.mods.sodium.client.render.chunk;
+
+/**
+ * Limits the amount of chunk update work which is performed on the main thread each frame so that a target frame time
+ * can be held. The cost of each kind of work (scheduling a rebuild, waiting on a blocking rebuild, and uploading mesh
+ * data) is measured as it happens, and the time left over in the frame after everything else has been drawn is split
+ * between them.
+ *
+ * Work which doesn't fit in the budget isn't dropped, but is instead spread across the following frames.
+ */
+public class ChunkUpdateBudget {
+    /**
+     * The frame time which the budget tries to hold, in nanoseconds.
+     */
+    private static final long TARGET_FRAME_TIME = 8_000_000L;
+
+    /**
+     * The minimum and maximum amount of time which can be spent on chunk updates in a single frame, in nanoseconds.
+     * The minimum ensures that chunk updates always make progress, even when the rest of the frame already exceeds
+     * the target frame time.
+     */
+    private static final long MIN_UPDATE_TIME = 2_000_000L;
+    private static final long MAX_UPDATE_TIME = TARGET_FRAME_TIME / 2;
+
+    /**
+     * The share of the chunk update time given to each kind of work.
+     */
+    private static final float SCHEDULING_SHARE = 0.25f;
+    private static final float BLOCKING_SHARE = 0.5f;
+    private static final float UPLOAD_SHARE = 0.25f;
+
+    /**
+     * The weight given to the latest sample when averaging the cost of each kind of work.
+     */
+    private static final float SMOOTHING = 0.1f;
+
+    // Initial guesses for the cost of each kind of work, which are quickly replaced by measurements
+    private float frameTime = TARGET_FRAME_TIME;
+    private float schedulingCost = 100_000.0f;
+    private float blockingCost = 1_000_000.0f;
+    private float uploadCost = 1.0f;
+
+    private long lastFrameStart = -1L;
+    private long updateTime;
+
+    private int maxScheduledTasks;
+    private int maxBlockingTasks;
+    private long maxUploadBytes;
+
+    public ChunkUpdateBudget() {
+        this.computeLimits(MIN_UPDATE_TIME);
+    }
+
+    /**
+     * Measures the time taken by the previous frame and re-computes the limits for the current frame. This should be
+     * called once at the start of each frame, before any chunk update work is performed.
+     */
+    public void beginFrame() {
+        long now = System.nanoTime();
+
+        if (this.lastFrameStart >= 0L) {
+            this.frameTime += ((now - this.lastFrameStart) - this.frameTime) * SMOOTHING;
+        }
+
+        // Estimate how long everything other than chunk updates takes, and give the rest of the target to chunk updates
+        float otherTime = Math.max(0.0f, this.frameTime - this.updateTime);
+        long updateTime = Math.max(MIN_UPDATE_TIME, Math.min(MAX_UPDATE_TIME, (long) (TARGET_FRAME_TIME - otherTime)));
+
+        this.computeLimits(updateTime);
+
+        this.lastFrameStart = now;
+        this.updateTime = 0L;
+    }
+
+    private void computeLimits(long updateTime) {
+        this.maxScheduledTasks = Math.max(1, (int) ((updateTime * SCHEDULING_SHARE) / this.schedulingCost));
+        this.maxBlockingTasks = Math.max(1, (int) ((updateTime * BLOCKING_SHARE) / this.blockingCost));
+        this.maxUploadBytes = Math.max(1L, (long) ((updateTime * UPLOAD_SHARE) / this.uploadCost));
+    }
+
+    public void recordScheduling(int tasks, long nanos) {
+        if (tasks > 0) {
+            this.schedulingCost += (((float) nanos / tasks) - this.schedulingCost) * SMOOTHING;
+        }
+
+        this.updateTime += nanos;
+    }
+
+    public void recordBlocking(int tasks, long nanos) {
+        if (tasks > 0) {
+            this.blockingCost += (((float) nanos / tasks) - this.blockingCost) * SMOOTHING;
+        }
+
+        this.updateTime += nanos;
+    }
+
+    public void recordUpload(long bytes, long nanos) {
+        if (bytes > 0) {
+            this.uploadCost += (((float) nanos / bytes) - this.uploadCost) * SMOOTHING;
+        }
+
+        this.updateTime += nanos;
+    }
+
+    /**
+     * @return The maximum number of rebuild tasks which should be scheduled this frame
+     */
+    public int getMaxScheduledTasks() {
+        return this.maxScheduledTasks;
+    }
+
+    /**
+     * @return The maximum number of rebuild tasks which the main thread should wait on this frame
+     */
+    public int getMaxBlockingTasks() {
+        return this.maxBlockingTasks;
+    }
+
+    /**
+     * @return The maximum number of bytes of mesh data which should be uploaded this frame
+     */
+    public long getMaxUploadBytes() {
+        return this.maxUploadBytes;
+    }
+
+    /**
+     * @return The average frame time, in milliseconds
+     */
+    public float getFrameTime() {
+        return this.frameTime / 1_000_000.0f;
+    }
+}
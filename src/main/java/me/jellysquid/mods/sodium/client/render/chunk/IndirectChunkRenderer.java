@@ -0,0 +1,294 @@
+package me.jellysquid.mods.sodium.client.render.chunk;
+
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
+import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexAttribute;
+import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexAttributeBinding;
+import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexAttributeFormat;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBufferUsage;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlMutableBuffer;
+import me.jellysquid.mods.sodium.client.gl.device.CommandList;
+import me.jellysquid.mods.sodium.client.gl.device.DrawCommandList;
+import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
+import me.jellysquid.mods.sodium.client.gl.tessellation.GlIndexType;
+import me.jellysquid.mods.sodium.client.gl.tessellation.GlPrimitiveType;
+import me.jellysquid.mods.sodium.client.gl.tessellation.GlTessellation;
+import me.jellysquid.mods.sodium.client.gl.tessellation.TessellationBinding;
+import me.jellysquid.mods.sodium.client.gl.util.ElementRange;
+import me.jellysquid.mods.sodium.client.gl.util.IndirectCommandBatch;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkMeshAttribute;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegion;
+import me.jellysquid.mods.sodium.client.render.chunk.shader.ChunkFogMode;
+import me.jellysquid.mods.sodium.client.render.chunk.shader.ChunkShaderBindingPoints;
+import me.jellysquid.mods.sodium.client.render.chunk.shader.ChunkShaderInterface;
+import me.jellysquid.mods.sodium.client.render.chunk.shader.ChunkShaderOptions;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders every visible region with a single indirect draw call per index type, rather than binding the buffers of
+ * each region and drawing them one by one. This requires the geometry of every region to be stored in the same arenas
+ * (see {@link me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegionManager}).
+ *
+ * The offset of each region from the camera is written into a buffer which is read as an instanced vertex attribute,
+ * and each draw command selects the offset of its region through its base instance.
+ */
+public class IndirectChunkRenderer extends ShaderChunkRenderer {
+    private static final int REGION_OFFSET_STRIDE = 3 * 4;
+
+    private final IndirectCommandBatch[] batches;
+    private final GlVertexAttributeBinding[] vertexAttributeBindings;
+    private final GlVertexAttributeBinding[] regionAttributeBindings;
+
+    private final GlMutableBuffer chunkInfoBuffer;
+    private final GlMutableBuffer regionOffsetBuffer;
+    private final GlMutableBuffer[] commandBuffers;
+
+    private ByteBuffer regionOffsets;
+    private int regionCount;
+
+    private final boolean isBlockFaceCullingEnabled = SodiumClientMod.options().performance.useBlockFaceCulling;
+
+    public IndirectChunkRenderer(RenderDevice device, ChunkVertexType vertexType) {
+        super(device, vertexType);
+
+        this.vertexAttributeBindings = new GlVertexAttributeBinding[] {
+                new GlVertexAttributeBinding(ChunkShaderBindingPoints.ATTRIBUTE_POSITION_ID,
+                        this.vertexFormat.getAttribute(ChunkMeshAttribute.POSITION_ID)),
+                new GlVertexAttributeBinding(ChunkShaderBindingPoints.ATTRIBUTE_COLOR,
+                        this.vertexFormat.getAttribute(ChunkMeshAttribute.COLOR)),
+                new GlVertexAttributeBinding(ChunkShaderBindingPoints.ATTRIBUTE_BLOCK_TEXTURE,
+                        this.vertexFormat.getAttribute(ChunkMeshAttribute.BLOCK_TEXTURE)),
+                new GlVertexAttributeBinding(ChunkShaderBindingPoints.ATTRIBUTE_LIGHT_TEXTURE,
+                        this.vertexFormat.getAttribute(ChunkMeshAttribute.LIGHT_TEXTURE))
+        };
+
+        this.regionAttributeBindings = new GlVertexAttributeBinding[] {
+                new GlVertexAttributeBinding(ChunkShaderBindingPoints.ATTRIBUTE_REGION_OFFSET,
+                        new GlVertexAttribute(GlVertexAttributeFormat.FLOAT, 3, false, 0, REGION_OFFSET_STRIDE), 1)
+        };
+
+        try (CommandList commandList = device.createCommandList()) {
+            this.chunkInfoBuffer = commandList.createMutableBuffer();
+            commandList.uploadData(this.chunkInfoBuffer, RegionChunkRenderer.DRAW_INFO_BUFFER, GlBufferUsage.STATIC_DRAW);
+
+            this.regionOffsetBuffer = commandList.createMutableBuffer();
+
+            this.commandBuffers = new GlMutableBuffer[GlIndexType.VALUES.length];
+
+            for (int i = 0; i < this.commandBuffers.length; i++) {
+                this.commandBuffers[i] = commandList.createMutableBuffer();
+            }
+        }
+
+        this.batches = new IndirectCommandBatch[GlIndexType.VALUES.length];
+
+        for (int i = 0; i < this.batches.length; i++) {
+            this.batches[i] = new IndirectCommandBatch(ModelQuadFacing.COUNT * RenderRegion.REGION_SIZE);
+        }
+
+        this.regionOffsets = MemoryUtil.memAlloc(64 * REGION_OFFSET_STRIDE);
+    }
+
+    public static boolean isSupported(RenderDevice device) {
+        GLCapabilities capabilities = device.getCapabilities();
+
+        // Instanced attributes need to start at the base instance of each command, which is only possible with
+        // ARB_base_instance, and ARB_multi_draw_indirect is a newer extension which doesn't imply it
+        return capabilities.OpenGL43 || (capabilities.OpenGL33 && capabilities.GL_ARB_multi_draw_indirect &&
+                capabilities.GL_ARB_base_instance);
+    }
+
+    @Override
+    public void render(ChunkRenderMatrices matrices, CommandList commandList,
+                       ChunkRenderList list, BlockRenderPass pass,
+                       ChunkCameraContext camera) {
+        super.begin(new ChunkShaderOptions(ChunkFogMode.SMOOTH, pass, this.vertexType, true));
+
+        ChunkShaderInterface shader = this.activeProgram.getInterface();
+        shader.setProjectionMatrix(matrices.projection());
+        shader.setModelViewMatrix(matrices.modelView());
+
+        shader.setDrawUniforms(this.chunkInfoBuffer);
+
+        RenderRegion.RenderRegionArenas arenas = this.buildDrawBatches(list, pass, camera);
+
+        if (arenas != null) {
+            this.executeDrawBatches(commandList, this.createTessellation(commandList, arenas, pass));
+        }
+
+        super.end();
+    }
+
+    /**
+     * @return The arenas which the geometry of every region is stored in, or null if nothing needs to be drawn
+     */
+    private RenderRegion.RenderRegionArenas buildDrawBatches(ChunkRenderList list, BlockRenderPass pass, ChunkCameraContext camera) {
+        for (IndirectCommandBatch batch : this.batches) {
+            batch.begin();
+        }
+
+        this.regionOffsets.clear();
+        this.regionCount = 0;
+
+        RenderRegion.RenderRegionArenas arenas = null;
+
+        for (Map.Entry<RenderRegion, List<RenderSection>> entry : RegionChunkRenderer.sortedRegions(list, pass.isTranslucent())) {
+            RenderRegion region = entry.getKey();
+
+            if (this.addDrawCommands(entry.getValue(), pass, camera, this.regionCount)) {
+                this.addRegionOffset(region, camera);
+
+                arenas = region.getArenas();
+            }
+        }
+
+        for (IndirectCommandBatch batch : this.batches) {
+            batch.end();
+        }
+
+        this.regionOffsets.flip();
+
+        return arenas;
+    }
+
+    private boolean addDrawCommands(List<RenderSection> sections, BlockRenderPass pass, ChunkCameraContext camera, int regionIndex) {
+        boolean nonEmpty = false;
+
+        for (RenderSection render : RegionChunkRenderer.sortedChunks(sections, pass.isTranslucent())) {
+            ChunkGraphicsState state = render.getGraphicsState(pass);
+
+            if (state == null) {
+                continue;
+            }
+
+            ChunkRenderBounds bounds = render.getBounds();
+
+            int indexOffset = state.getIndexOffset();
+
+            int baseVertex = state.getVertexSegment()
+                    .getOffset() / this.vertexFormat.getStride();
+
+            this.addDrawCommand(state.getModelPart(ModelQuadFacing.UNASSIGNED), indexOffset, baseVertex, regionIndex);
+
+            if (this.isBlockFaceCullingEnabled) {
+                if (camera.posY > bounds.y1) {
+                    this.addDrawCommand(state.getModelPart(ModelQuadFacing.UP), indexOffset, baseVertex, regionIndex);
+                }
+
+                if (camera.posY < bounds.y2) {
+                    this.addDrawCommand(state.getModelPart(ModelQuadFacing.DOWN), indexOffset, baseVertex, regionIndex);
+                }
+
+                if (camera.posX > bounds.x1) {
+                    this.addDrawCommand(state.getModelPart(ModelQuadFacing.EAST), indexOffset, baseVertex, regionIndex);
+                }
+
+                if (camera.posX < bounds.x2) {
+                    this.addDrawCommand(state.getModelPart(ModelQuadFacing.WEST), indexOffset, baseVertex, regionIndex);
+                }
+
+                if (camera.posZ > bounds.z1) {
+                    this.addDrawCommand(state.getModelPart(ModelQuadFacing.SOUTH), indexOffset, baseVertex, regionIndex);
+                }
+
+                if (camera.posZ < bounds.z2) {
+                    this.addDrawCommand(state.getModelPart(ModelQuadFacing.NORTH), indexOffset, baseVertex, regionIndex);
+                }
+            } else {
+                for (ModelQuadFacing facing : ModelQuadFacing.DIRECTIONS) {
+                    this.addDrawCommand(state.getModelPart(facing), indexOffset, baseVertex, regionIndex);
+                }
+            }
+
+            nonEmpty = true;
+        }
+
+        return nonEmpty;
+    }
+
+    private void addDrawCommand(ElementRange part, int baseIndexOffset, int baseVertexIndex, int regionIndex) {
+        if (part != null) {
+            GlIndexType indexType = part.indexType();
+
+            // Indirect commands refer to the first index by its position rather than its byte offset
+            int firstIndex = (baseIndexOffset + part.elementPointer()) / indexType.getStride();
+
+            this.batches[indexType.ordinal()]
+                    .add(part.elementCount(), firstIndex, baseVertexIndex + part.baseVertex(), regionIndex);
+        }
+    }
+
+    private void addRegionOffset(RenderRegion region, ChunkCameraContext camera) {
+        if (this.regionOffsets.remaining() < REGION_OFFSET_STRIDE) {
+            this.regionOffsets = MemoryUtil.memRealloc(this.regionOffsets, this.regionOffsets.capacity() * 2);
+        }
+
+        this.regionOffsets.putFloat(RegionChunkRenderer.getCameraTranslation(region.getOriginX(), camera.blockX, camera.deltaX));
+        this.regionOffsets.putFloat(RegionChunkRenderer.getCameraTranslation(region.getOriginY(), camera.blockY, camera.deltaY));
+        this.regionOffsets.putFloat(RegionChunkRenderer.getCameraTranslation(region.getOriginZ(), camera.blockZ, camera.deltaZ));
+
+        this.regionCount++;
+    }
+
+    private void executeDrawBatches(CommandList commandList, GlTessellation tessellation) {
+        // The buffers are re-specified every frame, which lets the driver hand out new storage instead of waiting for
+        // the previous frame's draws to finish with it
+        commandList.uploadData(this.regionOffsetBuffer, this.regionOffsets, GlBufferUsage.STREAM_DRAW);
+
+        for (int i = 0; i < this.batches.length; i++) {
+            IndirectCommandBatch batch = this.batches[i];
+
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            commandList.uploadData(this.commandBuffers[i], batch.getBuffer(), GlBufferUsage.STREAM_DRAW);
+
+            try (DrawCommandList drawCommandList = commandList.beginTessellating(tessellation)) {
+                drawCommandList.multiDrawElementsIndirect(this.commandBuffers[i], 0L, batch.getCount(),
+                        IndirectCommandBatch.COMMAND_STRIDE, GlIndexType.VALUES[i]);
+            }
+        }
+    }
+
+    private GlTessellation createTessellation(CommandList commandList, RenderRegion.RenderRegionArenas arenas, BlockRenderPass pass) {
+        GlTessellation tessellation = arenas.getTessellation(pass);
+
+        if (tessellation == null) {
+            arenas.setTessellation(pass, tessellation = commandList.createTessellation(GlPrimitiveType.TRIANGLES, new TessellationBinding[] {
+                    TessellationBinding.forVertexBuffer(arenas.vertexBuffers.getBufferObject(), this.vertexAttributeBindings),
+                    TessellationBinding.forVertexBuffer(this.regionOffsetBuffer, this.regionAttributeBindings),
+                    TessellationBinding.forElementBuffer(arenas.getIndexBufferObject())
+            }));
+        }
+
+        return tessellation;
+    }
+
+    @Override
+    public void delete() {
+        super.delete();
+
+        for (IndirectCommandBatch batch : this.batches) {
+            batch.delete();
+        }
+
+        MemoryUtil.memFree(this.regionOffsets);
+
+        CommandList commandList = RenderDevice.INSTANCE.createCommandList();
+        commandList.deleteBuffer(this.chunkInfoBuffer);
+        commandList.deleteBuffer(this.regionOffsetBuffer);
+
+        for (GlMutableBuffer buffer : this.commandBuffers) {
+            commandList.deleteBuffer(buffer);
+        }
+    }
+}
@@ -29,7 +29,7 @@ import java.util.List;
 import java.util.Map;
 
 public class RegionChunkRenderer extends ShaderChunkRenderer {
-    private static final ByteBuffer DRAW_INFO_BUFFER = createChunkInfoBuffer();
+    static final ByteBuffer DRAW_INFO_BUFFER = createChunkInfoBuffer();
 
     private final MultiDrawBatch[] batches;
     private final GlVertexAttributeBinding[] vertexAttributeBindings;
@@ -104,8 +104,7 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
 
             ChunkRenderBounds bounds = render.getBounds();
 
-            long indexOffset = state.getIndexSegment()
-                    .getOffset();
+            long indexOffset = state.getIndexOffset();
 
             int baseVertex = state.getVertexSegment()
                     .getOffset() / this.vertexFormat.getStride();
@@ -194,7 +193,7 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
     private GlTessellation createRegionTessellation(CommandList commandList, RenderRegion.RenderRegionArenas arenas) {
         return commandList.createTessellation(GlPrimitiveType.TRIANGLES, new TessellationBinding[] {
                 TessellationBinding.forVertexBuffer(arenas.vertexBuffers.getBufferObject(), this.vertexAttributeBindings),
-                TessellationBinding.forElementBuffer(arenas.indexBuffers.getBufferObject())
+                TessellationBinding.forElementBuffer(arenas.getIndexBufferObject())
         });
     }
 
@@ -210,15 +209,15 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
                 .deleteBuffer(this.chunkInfoBuffer);
     }
 
-    private static Iterable<Map.Entry<RenderRegion, List<RenderSection>>> sortedRegions(ChunkRenderList list, boolean translucent) {
+    static Iterable<Map.Entry<RenderRegion, List<RenderSection>>> sortedRegions(ChunkRenderList list, boolean translucent) {
         return list.sorted(translucent);
     }
 
-    private static Iterable<RenderSection> sortedChunks(List<RenderSection> chunks, boolean translucent) {
+    static Iterable<RenderSection> sortedChunks(List<RenderSection> chunks, boolean translucent) {
         return translucent ? Lists.reverse(chunks) : chunks;
     }
 
-    private static float getCameraTranslation(int chunkBlockPos, int cameraBlockPos, float cameraPos) {
+    static float getCameraTranslation(int chunkBlockPos, int cameraBlockPos, float cameraPos) {
         return (chunkBlockPos - cameraBlockPos) - cameraPos;
     }
 
@@ -1,18 +1,16 @@
 package me.jellysquid.mods.sodium.client.render.chunk;
 
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import me.jellysquid.mods.sodium.client.render.SodiumWorldRenderer;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.RetainedChunkGeometry;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
-import me.jellysquid.mods.sodium.client.render.chunk.graph.ChunkGraphInfo;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegion;
 import me.jellysquid.mods.sodium.client.render.texture.SpriteUtil;
-import me.jellysquid.mods.sodium.common.util.DirectionUtil;
-import net.minecraft.client.renderer.chunk.VisibilitySet;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.Direction;
 import net.minecraft.core.SectionPos;
 
 import java.util.EnumMap;
@@ -24,31 +22,44 @@ import java.util.concurrent.CompletableFuture;
  * data about the render in the chunk visibility graph.
  */
 public class RenderSection {
+    /**
+     * The maximum number of changed blocks which will be tracked before the whole section is re-meshed instead.
+     */
+    private static final int MAX_DIRTY_BLOCKS = 32;
+
     private final SodiumWorldRenderer worldRenderer;
     private final int chunkX, chunkY, chunkZ;
 
     private final Map<BlockRenderPass, ChunkGraphicsState> graphicsStates;
     private final RenderRegion region;
-    private final ChunkGraphInfo graphInfo;
+    private final int graphId;
     private final int chunkId;
 
     private final float regionOffsetX;
     private final float regionOffsetY;
     private final float regionOffsetZ;
 
-    private final RenderSection[] adjacent = new RenderSection[DirectionUtil.ALL_DIRECTIONS.length];
-
     private ChunkRenderData data = ChunkRenderData.ABSENT;
     private CompletableFuture<?> rebuildTask = null;
 
     private ChunkUpdateType pendingUpdate;
 
+    // The blocks which have changed since the last rebuild was submitted, if only a few blocks have changed
+    private final LongArrayList dirtyBlocks = new LongArrayList();
+    private boolean needsFullRebuild;
+
+    private RetainedChunkGeometry retainedGeometry;
+    private boolean retainsGeometry;
+
+    private int lastSubmittedBuildTime = -1;
+
     private boolean tickable;
     private boolean disposed;
 
     private int lastAcceptedBuildTime = -1;
+    private int lastAcceptedPartialBuildTime = -1;
 
-    public RenderSection(SodiumWorldRenderer worldRenderer, int chunkX, int chunkY, int chunkZ, RenderRegion region) {
+    public RenderSection(SodiumWorldRenderer worldRenderer, int graphId, int chunkX, int chunkY, int chunkZ, RenderRegion region) {
         this.worldRenderer = worldRenderer;
         this.region = region;
 
@@ -56,7 +67,7 @@ public class RenderSection {
         this.chunkY = chunkY;
         this.chunkZ = chunkZ;
 
-        this.graphInfo = new ChunkGraphInfo(this);
+        this.graphId = graphId;
 
         this.graphicsStates = new EnumMap<>(BlockRenderPass.class);
 
@@ -71,15 +82,6 @@ public class RenderSection {
         this.chunkId = RenderRegion.getChunkIndex(rX, rY, rZ);
     }
 
-
-    public RenderSection getAdjacent(Direction dir) {
-        return this.adjacent[dir.ordinal()];
-    }
-
-    public void setAdjacentNode(Direction dir, RenderSection node) {
-        this.adjacent[dir.ordinal()] = node;
-    }
-
     /**
      * Cancels any pending tasks to rebuild the chunk. If the result of any pending tasks has not been processed yet,
      * those will also be discarded when processing finally happens.
@@ -105,6 +107,8 @@ public class RenderSection {
         this.setData(ChunkRenderData.ABSENT);
         this.deleteGraphicsState();
 
+        this.retainedGeometry = null;
+
         this.disposed = true;
     }
 
@@ -268,12 +272,11 @@ public class RenderSection {
                 this.chunkX, this.chunkY, this.chunkZ);
     }
 
-    public ChunkGraphInfo getGraphInfo() {
-        return this.graphInfo;
-    }
-
-    public void setOcclusionData(VisibilitySet occlusionData) {
-        this.graphInfo.setOcclusionData(occlusionData);
+    /**
+     * @return The ID of this section's node in the chunk visibility graph
+     */
+    public int getGraphId() {
+        return this.graphId;
     }
 
     public ChunkUpdateType getPendingUpdate() {
@@ -286,7 +289,67 @@ public class RenderSection {
         }
     }
 
-    public void onBuildSubmitted(CompletableFuture<?> task) {
+    /**
+     * Records that a single block within (or next to) this section has changed. If only a few blocks change before the
+     * next rebuild, the rebuild can re-mesh just the blocks around them.
+     */
+    public void markBlockForUpdate(int x, int y, int z) {
+        if (this.needsFullRebuild) {
+            return;
+        }
+
+        if (this.dirtyBlocks.size() >= MAX_DIRTY_BLOCKS) {
+            this.markFullRebuild();
+        } else {
+            this.dirtyBlocks.add(BlockPos.asLong(x, y, z));
+        }
+    }
+
+    /**
+     * Records that an unknown part of this section has changed, so that the whole section must be re-meshed.
+     */
+    public void markFullRebuild() {
+        this.needsFullRebuild = true;
+        this.dirtyBlocks.clear();
+    }
+
+    /**
+     * @return The positions of the blocks which have changed since the last rebuild was submitted, or null if the
+     * next rebuild must re-mesh the whole section
+     */
+    public long[] getDirtyBlocks() {
+        return this.needsFullRebuild ? null : this.dirtyBlocks.toLongArray();
+    }
+
+    /**
+     * @return The geometry kept from the last build if the next build can re-use it, otherwise null
+     */
+    public RetainedChunkGeometry getRetainedGeometry() {
+        // The geometry can only be used if it came from the most recently submitted build, otherwise the changes which
+        // that build was meant to pick up would be missed
+        if (this.needsFullRebuild || this.dirtyBlocks.isEmpty() || this.lastAcceptedBuildTime != this.lastSubmittedBuildTime) {
+            return null;
+        }
+
+        return this.retainedGeometry;
+    }
+
+    /**
+     * Sets whether the geometry of this section should be kept after it is built.
+     */
+    public void setRetainsGeometry(boolean retainsGeometry) {
+        this.retainsGeometry = retainsGeometry;
+
+        if (!retainsGeometry) {
+            this.retainedGeometry = null;
+        }
+    }
+
+    public boolean retainsGeometry() {
+        return this.retainsGeometry;
+    }
+
+    public void onBuildSubmitted(CompletableFuture<?> task, int buildTime) {
         if (this.rebuildTask != null) {
             this.rebuildTask.cancel(false);
             this.rebuildTask = null;
@@ -294,6 +357,10 @@ public class RenderSection {
 
         this.rebuildTask = task;
         this.pendingUpdate = null;
+
+        this.lastSubmittedBuildTime = buildTime;
+        this.dirtyBlocks.clear();
+        this.needsFullRebuild = false;
     }
 
     public boolean isBuilt() {
@@ -301,12 +368,32 @@ public class RenderSection {
     }
 
     public boolean canAcceptBuildResults(ChunkBuildResult result) {
-        return !this.isDisposed() && result.buildTime > this.lastAcceptedBuildTime;
+        if (this.isDisposed() || result.buildTime <= this.lastAcceptedBuildTime) {
+            return false;
+        }
+
+        // The final result of a build must not replace the partial result of a newer build, and a partial result must
+        // not replace the passes of a newer partial result
+        if (result.partial) {
+            return result.buildTime > this.lastAcceptedPartialBuildTime;
+        } else {
+            return result.buildTime >= this.lastAcceptedPartialBuildTime;
+        }
     }
 
     public void onBuildFinished(ChunkBuildResult result) {
         this.setData(result.data);
+
+        if (result.partial) {
+            this.lastAcceptedPartialBuildTime = result.buildTime;
+            return;
+        }
+
         this.lastAcceptedBuildTime = result.buildTime;
+
+        if (this.retainsGeometry) {
+            this.retainedGeometry = result.retainedGeometry;
+        }
     }
 
     public int getChunkId() {
@@ -1,21 +1,21 @@
 package me.jellysquid.mods.sodium.client.render.chunk;
 
 import com.mojang.blaze3d.systems.RenderSystem;
-import it.unimi.dsi.fastutil.PriorityQueue;
-import it.unimi.dsi.fastutil.longs.Long2ReferenceMap;
-import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
+import com.mojang.math.Vector3f;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectList;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
 import me.jellysquid.mods.sodium.client.render.SodiumWorldRenderer;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuilder;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkMeshCache;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.RetainedChunkGeometry;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkModelVertexFormats;
-import me.jellysquid.mods.sodium.client.render.chunk.graph.ChunkGraphInfo;
+import me.jellysquid.mods.sodium.client.render.chunk.graph.ChunkGraph;
 import me.jellysquid.mods.sodium.client.render.chunk.graph.ChunkGraphIterationQueue;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManager;
@@ -26,8 +26,8 @@ import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderEmptyBuild
 import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderRebuildTask;
 import me.jellysquid.mods.sodium.client.util.MathUtil;
 import me.jellysquid.mods.sodium.client.util.frustum.Frustum;
+import me.jellysquid.mods.sodium.client.util.frustum.PaddedFrustum;
 import me.jellysquid.mods.sodium.client.world.WorldSlice;
-import me.jellysquid.mods.sodium.client.world.cloned.ChunkRenderContext;
 import me.jellysquid.mods.sodium.client.world.cloned.ClonedChunkSectionCache;
 import me.jellysquid.mods.sodium.common.util.DirectionUtil;
 import me.jellysquid.mods.sodium.common.util.collections.WorkStealingFutureDrain;
@@ -46,6 +46,10 @@ import net.minecraft.world.phys.Vec3;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RenderSectionManager {
     /**
@@ -67,22 +71,89 @@ public class RenderSectionManager {
      */
     private static final float FOG_PLANE_OFFSET = 12.0f;
 
+    /**
+     * The distance (in blocks) which the camera can move away from where the visibility graph was last traversed
+     * before it needs to be traversed again. Only used when incremental traversal is enabled.
+     */
+    private static final float INCREMENTAL_TRANSLATION_THRESHOLD = 4.0f;
+
+    /**
+     * The angle (in radians) which the camera can rotate away from the direction it was facing when the visibility
+     * graph was last traversed before it needs to be traversed again. Only used when incremental traversal is enabled.
+     */
+    private static final double INCREMENTAL_ROTATION_THRESHOLD = Math.toRadians(5.0);
+    private static final float INCREMENTAL_ROTATION_THRESHOLD_COS = (float) Math.cos(INCREMENTAL_ROTATION_THRESHOLD);
+    private static final float INCREMENTAL_ROTATION_THRESHOLD_SIN = (float) Math.sin(INCREMENTAL_ROTATION_THRESHOLD);
+
+    /**
+     * The minimum number of nodes in a level of the breadth-first search before it will be processed in parallel.
+     * Smaller levels are cheaper to process on the calling thread than to split across the traversal pool.
+     */
+    private static final int PARALLEL_TRAVERSAL_MIN_LEVEL_SIZE = 512;
+
+    /**
+     * The number of nodes each task in the traversal pool will process before it stops splitting its work.
+     */
+    private static final int PARALLEL_TRAVERSAL_TASK_SIZE = 128;
+
+    /**
+     * The minimum and maximum number of sections which can be waiting in each rebuild queue.
+     */
+    private static final int MIN_REBUILD_QUEUE_SIZE = 32;
+    private static final int MAX_REBUILD_QUEUE_SIZE = 2048;
+
+    /**
+     * The number of frames worth of builds (at the builder's measured throughput) which each rebuild queue can hold.
+     */
+    private static final int REBUILD_QUEUE_FRAMES = 16;
+
+    /**
+     * The weight given to the latest sample when averaging the number of builds completed per frame.
+     */
+    private static final float BUILD_THROUGHPUT_SMOOTHING = 0.05f;
+
+    /**
+     * The maximum number of sections which will keep a copy of their geometry in system memory for re-meshing only
+     * the blocks around single block changes.
+     */
+    private static final int MAX_RETAINED_SECTIONS = 64;
+
+    /**
+     * The maximum number of bytes which will be moved within region arenas each frame to close the gaps between
+     * segments. Compacting an arena a little at a time avoids having to compact all of it at once when it runs out of
+     * space, which can take long enough to cause a visible stutter.
+     */
+    private static final int MAX_COMPACTION_BYTES = 1024 * 1024;
+
     private final ChunkBuilder builder;
 
     private final RenderRegionManager regions;
+
+    // The number of bytes which were moved by arena compaction in the last frame
+    private int compactedBytes;
+
+    // The total number of bytes of device memory which have been released by shrinking arenas
+    private long reclaimedBytes;
     private final ClonedChunkSectionCache sectionCache;
 
-    private final Long2ReferenceMap<RenderSection> sections = new Long2ReferenceOpenHashMap<>();
+    private final RenderSectionStorage sections;
 
-    private final Map<ChunkUpdateType, PriorityQueue<RenderSection>> rebuildQueues = new EnumMap<>(ChunkUpdateType.class);
+    private final Map<ChunkUpdateType, ChunkRebuildQueue> rebuildQueues = new EnumMap<>(ChunkUpdateType.class);
 
     private final ChunkRenderList chunkRenderList = new ChunkRenderList();
+    private final ChunkGraph graph = new ChunkGraph();
     private final ChunkGraphIterationQueue iterationQueue = new ChunkGraphIterationQueue();
 
+    private final ForkJoinPool traversalPool;
+    private int[] traversalCandidates = new int[0];
+
     private final ObjectList<RenderSection> tickableChunks = new ObjectArrayList<>();
     private final ObjectList<BlockEntity> visibleBlockEntities = new ObjectArrayList<>();
 
-    private final RegionChunkRenderer chunkRenderer;
+    // The sections which keep their geometry after being built, from least to most recently rebuilt
+    private final ReferenceLinkedOpenHashSet<RenderSection> retainedSections = new ReferenceLinkedOpenHashSet<>();
+
+    private final ChunkRenderer chunkRenderer;
 
     private final SodiumWorldRenderer worldRenderer;
     private final ClientLevel world;
@@ -90,10 +161,22 @@ public class RenderSectionManager {
     private final int renderDistance;
 
     private float cameraX, cameraY, cameraZ;
+    private float cameraLookX, cameraLookY, cameraLookZ;
     private int centerChunkX, centerChunkZ;
 
     private boolean needsUpdate;
 
+    private boolean needsGraphTraversal;
+    private boolean needsListRebuild;
+
+    private boolean useIncrementalTraversal;
+
+    private double traversalCameraX, traversalCameraY, traversalCameraZ;
+    private float traversalLookX, traversalLookY, traversalLookZ;
+    private int traversalChunkX, traversalChunkY, traversalChunkZ;
+    private double traversalFogRenderCutoff;
+    private boolean traversalOcclusionCulling;
+
     private boolean useFogCulling;
     private boolean useOcclusionCulling;
 
@@ -102,12 +185,27 @@ public class RenderSectionManager {
     private Frustum frustum;
 
     private int currentFrame = 0;
+    private int traversalFrame = -1;
     private boolean alwaysDeferChunkUpdates;
 
     private final ChunkTracker tracker;
 
+    private long lastCompletedBuildCount;
+    private float buildThroughput;
+    private int rebuildQueueCapacity = MIN_REBUILD_QUEUE_SIZE;
+
+    private final ChunkUpdateBudget updateBudget = new ChunkUpdateBudget();
+    private int remainingScheduledTasks;
+
     public RenderSectionManager(SodiumWorldRenderer worldRenderer, BlockRenderPassManager renderPassManager, ClientLevel world, int renderDistance, CommandList commandList) {
-        this.chunkRenderer = new RegionChunkRenderer(RenderDevice.INSTANCE, ChunkModelVertexFormats.DEFAULT);
+        boolean useMultiDrawIndirect = SodiumClientMod.options().advanced.useMultiDrawIndirect &&
+                IndirectChunkRenderer.isSupported(RenderDevice.INSTANCE);
+
+        if (useMultiDrawIndirect) {
+            this.chunkRenderer = new IndirectChunkRenderer(RenderDevice.INSTANCE, ChunkModelVertexFormats.DEFAULT);
+        } else {
+            this.chunkRenderer = new RegionChunkRenderer(RenderDevice.INSTANCE, ChunkModelVertexFormats.DEFAULT);
+        }
 
         this.worldRenderer = worldRenderer;
         this.world = world;
@@ -116,16 +214,39 @@ public class RenderSectionManager {
         this.builder.init(world, renderPassManager);
 
         this.needsUpdate = true;
+        this.needsGraphTraversal = true;
         this.renderDistance = renderDistance;
 
-        this.regions = new RenderRegionManager(commandList);
-        this.sectionCache = new ClonedChunkSectionCache(this.world);
+        // The client keeps a few chunks beyond the render distance loaded, see ClientChunkCache
+        this.sections = new RenderSectionStorage(Math.max(2, renderDistance) + 3, world.getMinSection(), world.getMaxSection());
+
+        // The indirect renderer draws every region at once, so all of their geometry must be in the same buffers
+        this.regions = new RenderRegionManager(commandList, useMultiDrawIndirect);
+        this.sectionCache = new ClonedChunkSectionCache(this.world, SodiumClientMod.options().advanced.chunkCloneCacheSize * 1024L * 1024L);
 
         for (ChunkUpdateType type : ChunkUpdateType.values()) {
-            this.rebuildQueues.put(type, new ObjectArrayFIFOQueue<>());
+            this.rebuildQueues.put(type, new ChunkRebuildQueue(MAX_REBUILD_QUEUE_SIZE));
         }
 
         this.tracker = this.worldRenderer.getChunkTracker();
+        this.traversalPool = SodiumClientMod.options().performance.useParallelGraphTraversal ? createTraversalPool() : null;
+    }
+
+    private static ForkJoinPool createTraversalPool() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        if (threads <= 1) {
+            return null;
+        }
+
+        AtomicInteger threadId = new AtomicInteger();
+
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Chunk Graph Traversal Worker #" + threadId.getAndIncrement());
+
+            return thread;
+        }, null, false);
     }
 
     public void reloadChunks(ChunkTracker tracker) {
@@ -134,16 +255,134 @@ public class RenderSectionManager {
     }
 
     public void update(Camera camera, Frustum frustum, int frame, boolean spectator) {
-        this.resetLists();
-
-        this.regions.updateVisibility(frustum);
+        this.currentFrame = frame;
 
         this.setup(camera);
-        this.iterateChunks(camera, frustum, frame, spectator);
+
+        boolean occlusionCulling = this.shouldUseOcclusionCulling(camera, spectator);
+
+        if (this.isTraversalStale(camera, occlusionCulling)) {
+            this.resetLists();
+
+            if (this.useIncrementalTraversal) {
+                // Pad the frustum so that the results of this traversal remain valid until the camera moves or rotates
+                // far enough to trigger another one
+                frustum = new PaddedFrustum(frustum, this.cameraX, this.cameraY, this.cameraZ,
+                        INCREMENTAL_TRANSLATION_THRESHOLD, INCREMENTAL_ROTATION_THRESHOLD_SIN);
+            }
+
+            this.regions.updateVisibility(frustum);
+
+            this.iterateChunks(camera, frustum, frame, occlusionCulling);
+            this.saveTraversalOrigin(camera, occlusionCulling);
+        } else {
+            this.updateVisibleLists();
+        }
 
         this.needsUpdate = false;
     }
 
+    private boolean shouldUseOcclusionCulling(Camera camera, boolean spectator) {
+        if (!Minecraft.getInstance().smartCull) {
+            return false;
+        }
+
+        // Spectators can fly through blocks, so occlusion culling must be disabled while the camera is inside one
+        BlockPos origin = camera.getBlockPosition();
+
+        return !spectator || !this.world.getBlockState(origin).isSolidRender(this.world, origin);
+    }
+
+    /**
+     * @return True if the visibility graph needs to be traversed again from scratch, or false if the visible set from
+     *         the last traversal can be re-used
+     */
+    private boolean isTraversalStale(Camera camera, boolean occlusionCulling) {
+        if (!this.useIncrementalTraversal || this.needsGraphTraversal) {
+            return true;
+        }
+
+        BlockPos origin = camera.getBlockPosition();
+
+        if ((origin.getX() >> 4) != this.traversalChunkX || (origin.getY() >> 4) != this.traversalChunkY ||
+                (origin.getZ() >> 4) != this.traversalChunkZ) {
+            return true;
+        }
+
+        if (occlusionCulling != this.traversalOcclusionCulling || this.fogRenderCutoff != this.traversalFogRenderCutoff) {
+            return true;
+        }
+
+        double dX = this.cameraX - this.traversalCameraX;
+        double dY = this.cameraY - this.traversalCameraY;
+        double dZ = this.cameraZ - this.traversalCameraZ;
+
+        if ((dX * dX) + (dY * dY) + (dZ * dZ) > INCREMENTAL_TRANSLATION_THRESHOLD * INCREMENTAL_TRANSLATION_THRESHOLD) {
+            return true;
+        }
+
+        Vector3f look = camera.getLookVector();
+        float dot = (look.x() * this.traversalLookX) + (look.y() * this.traversalLookY) + (look.z() * this.traversalLookZ);
+
+        return dot < INCREMENTAL_ROTATION_THRESHOLD_COS;
+    }
+
+    private void saveTraversalOrigin(Camera camera, boolean occlusionCulling) {
+        BlockPos origin = camera.getBlockPosition();
+
+        this.traversalChunkX = origin.getX() >> 4;
+        this.traversalChunkY = origin.getY() >> 4;
+        this.traversalChunkZ = origin.getZ() >> 4;
+
+        this.traversalCameraX = this.cameraX;
+        this.traversalCameraY = this.cameraY;
+        this.traversalCameraZ = this.cameraZ;
+
+        Vector3f look = camera.getLookVector();
+
+        this.traversalLookX = look.x();
+        this.traversalLookY = look.y();
+        this.traversalLookZ = look.z();
+
+        this.traversalFogRenderCutoff = this.fogRenderCutoff;
+        this.traversalOcclusionCulling = occlusionCulling;
+
+        this.needsGraphTraversal = false;
+        this.needsListRebuild = false;
+    }
+
+    /**
+     * Re-uses the visible set from the last graph traversal instead of traversing the graph again. Any pending updates
+     * for visible sections are re-scheduled, and the render lists are only re-built if the contents of a section changed.
+     */
+    private void updateVisibleLists() {
+        for (ChunkRebuildQueue queue : this.rebuildQueues.values()) {
+            queue.clear();
+        }
+
+        boolean rebuildLists = this.needsListRebuild;
+
+        if (rebuildLists) {
+            this.visibleBlockEntities.clear();
+            this.chunkRenderList.clear();
+            this.tickableChunks.clear();
+        }
+
+        ChunkGraphIterationQueue queue = this.iterationQueue;
+
+        for (int i = 0; i < queue.size(); i++) {
+            RenderSection section = this.graph.getSection(queue.getNode(i));
+
+            this.schedulePendingUpdates(section);
+
+            if (rebuildLists) {
+                this.addToRenderLists(section);
+            }
+        }
+
+        this.needsListRebuild = false;
+    }
+
     private void setup(Camera camera) {
         Vec3 cameraPos = camera.getPosition();
 
@@ -151,10 +390,17 @@ public class RenderSectionManager {
         this.cameraY = (float) cameraPos.y;
         this.cameraZ = (float) cameraPos.z;
 
+        Vector3f look = camera.getLookVector();
+
+        this.cameraLookX = look.x();
+        this.cameraLookY = look.y();
+        this.cameraLookZ = look.z();
+
         var options = SodiumClientMod.options();
 
         this.useFogCulling = options.performance.useFogOcclusion;
         this.alwaysDeferChunkUpdates = options.performance.alwaysDeferChunkUpdates;
+        this.useIncrementalTraversal = options.performance.useIncrementalGraphTraversal;
 
         if (this.useFogCulling) {
             float dist = RenderSystem.getShaderFogEnd() + FOG_PLANE_OFFSET;
@@ -167,43 +413,152 @@ public class RenderSectionManager {
         }
     }
 
-    private void iterateChunks(Camera camera, Frustum frustum, int frame, boolean spectator) {
-        this.initSearch(camera, frustum, frame, spectator);
+    private void iterateChunks(Camera camera, Frustum frustum, int frame, boolean occlusionCulling) {
+        this.initSearch(camera, frustum, frame, occlusionCulling);
 
         ChunkGraphIterationQueue queue = this.iterationQueue;
 
-        for (int i = 0; i < queue.size(); i++) {
-            RenderSection section = queue.getRender(i);
-            Direction flow = queue.getDirection(i);
+        // The queue is processed one level of the breadth-first search at a time. Every node added while processing
+        // a level belongs to the next level, so the order of the queue is the same as a plain first-in-first-out walk.
+        int levelStart = 0;
 
-            this.schedulePendingUpdates(section);
+        while (levelStart < queue.size()) {
+            int levelEnd = queue.size();
 
-            for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
-                if (this.isCulled(section.getGraphInfo(), flow, dir)) {
+            if (this.traversalPool != null && levelEnd - levelStart >= PARALLEL_TRAVERSAL_MIN_LEVEL_SIZE) {
+                this.iterateLevelParallel(levelStart, levelEnd);
+            } else {
+                for (int i = levelStart; i < levelEnd; i++) {
+                    this.iterateNode(i);
+                }
+            }
+
+            levelStart = levelEnd;
+        }
+    }
+
+    private void iterateNode(int i) {
+        ChunkGraphIterationQueue queue = this.iterationQueue;
+
+        int node = queue.getNode(i);
+        Direction flow = queue.getDirection(i);
+
+        this.schedulePendingUpdates(this.graph.getSection(node));
+
+        for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
+            int adj = this.findTraversableNeighbor(node, flow, dir);
+
+            if (adj != ChunkGraph.NULL_ID) {
+                this.markVisible(node, adj, DirectionUtil.getOpposite(dir));
+            }
+        }
+    }
+
+    /**
+     * Processes a level of the breadth-first search using the traversal pool. Worker threads only perform the
+     * (expensive) culling tests for each node and record which neighbors pass them, without modifying any state. The
+     * results are then merged on the calling thread in queue order, which produces exactly the same visible set and
+     * render lists as processing the level sequentially.
+     */
+    private void iterateLevelParallel(int start, int end) {
+        int directionCount = DirectionUtil.ALL_DIRECTIONS.length;
+        int candidateCount = (end - start) * directionCount;
+
+        if (this.traversalCandidates.length < candidateCount) {
+            this.traversalCandidates = new int[Math.max(candidateCount, this.traversalCandidates.length * 2)];
+            Arrays.fill(this.traversalCandidates, ChunkGraph.NULL_ID);
+        }
+
+        int[] candidates = this.traversalCandidates;
+
+        this.traversalPool.invoke(new FindNeighborsTask(candidates, start, start, end));
+
+        ChunkGraphIterationQueue queue = this.iterationQueue;
+
+        for (int i = start; i < end; i++) {
+            int node = queue.getNode(i);
+
+            this.schedulePendingUpdates(this.graph.getSection(node));
+
+            int base = (i - start) * directionCount;
+
+            for (int j = 0; j < directionCount; j++) {
+                int adj = candidates[base + j];
+
+                if (adj == ChunkGraph.NULL_ID) {
                     continue;
                 }
 
-                RenderSection adj = section.getAdjacent(dir);
+                candidates[base + j] = ChunkGraph.NULL_ID;
 
-                if (adj != null && this.isWithinRenderDistance(adj)) {
-                    this.bfsEnqueue(section, adj, DirectionUtil.getOpposite(dir));
+                // Another node earlier in this level may have already reached the neighbor
+                if (this.graph.getLastVisibleFrame(adj) != this.traversalFrame) {
+                    this.markVisible(node, adj, DirectionUtil.getOpposite(DirectionUtil.ALL_DIRECTIONS[j]));
                 }
             }
         }
     }
 
+    /**
+     * Returns the neighbor of a node in the given direction if the search can continue into it. This does not modify
+     * any state, and as such, is safe to call from multiple threads while the graph is not being modified.
+     */
+    private int findTraversableNeighbor(int node, Direction flow, Direction dir) {
+        if (this.isCulled(node, flow, dir)) {
+            return ChunkGraph.NULL_ID;
+        }
+
+        int adj = this.graph.getAdjacent(node, dir);
+
+        if (adj == ChunkGraph.NULL_ID || !this.isWithinRenderDistance(adj) || !this.canEnqueue(node, adj)) {
+            return ChunkGraph.NULL_ID;
+        }
+
+        return adj;
+    }
+
     private void schedulePendingUpdates(RenderSection section) {
         if (section.getPendingUpdate() == null || !this.tracker.hasMergedFlags(section.getChunkX(), section.getChunkZ(), ChunkStatus.FLAG_ALL)) {
             return;
         }
 
-        PriorityQueue<RenderSection> queue = this.rebuildQueues.get(section.getPendingUpdate());
+        ChunkRebuildQueue queue = this.rebuildQueues.get(section.getPendingUpdate());
 
-        if (queue.size() >= 32) {
-            return;
-        }
+        // Sections are found in the order of the search rather than their priority, so a full queue evicts its worst
+        // section in favor of a better one instead of ignoring every section found after it filled up
+        queue.enqueue(section, this.getRebuildPriority(section), this.rebuildQueueCapacity);
+    }
+
+    /**
+     * Returns the priority of rebuilding the given section, where lower values are built first. This is the distance
+     * from the camera to the section, scaled from 1x for sections directly in front of the camera up to 3x for sections
+     * directly behind it, so that the sections which the player is looking at are built before nearby sections which
+     * are barely in view.
+     */
+    private float getRebuildPriority(RenderSection section) {
+        float dx = (section.getOriginX() + 8.0f) - this.cameraX;
+        float dy = (section.getOriginY() + 8.0f) - this.cameraY;
+        float dz = (section.getOriginZ() + 8.0f) - this.cameraZ;
+
+        float distance = (float) Math.sqrt((dx * dx) + (dy * dy) + (dz * dz));
+        float facing = (dx * this.cameraLookX) + (dy * this.cameraLookY) + (dz * this.cameraLookZ);
+
+        return (distance * 2.0f) - facing;
+    }
+
+    /**
+     * Measures how many builds completed since the last frame and re-sizes the rebuild queues to match, so that a fast
+     * builder never runs dry while a slow one doesn't keep large numbers of sections queued which it can't get to.
+     */
+    private void updateRebuildQueueCapacity() {
+        long completed = this.builder.getCompletedTaskCount();
+        long delta = completed - this.lastCompletedBuildCount;
 
-        queue.enqueue(section);
+        this.lastCompletedBuildCount = completed;
+        this.buildThroughput += (delta - this.buildThroughput) * BUILD_THROUGHPUT_SMOOTHING;
+
+        this.rebuildQueueCapacity = Mth.clamp(Mth.ceil(this.buildThroughput * REBUILD_QUEUE_FRAMES),
+                MIN_REBUILD_QUEUE_SIZE, MAX_REBUILD_QUEUE_SIZE);
     }
 
     private void addChunkToVisible(RenderSection render) {
@@ -223,7 +578,7 @@ public class RenderSectionManager {
     }
 
     private void resetLists() {
-        for (PriorityQueue<RenderSection> queue : this.rebuildQueues.values()) {
+        for (ChunkRebuildQueue queue : this.rebuildQueues.values()) {
             queue.clear();
         }
 
@@ -240,21 +595,29 @@ public class RenderSectionManager {
         for (int y = this.world.getMinSection(); y < this.world.getMaxSection(); y++) {
             this.needsUpdate |= this.loadSection(x, y, z);
         }
+
+        this.needsGraphTraversal = true;
     }
 
     public void onChunkRemoved(int x, int z) {
         for (int y = this.world.getMinSection(); y < this.world.getMaxSection(); y++) {
             this.needsUpdate |= this.unloadSection(x, y, z);
         }
+
+        this.needsGraphTraversal = true;
     }
 
     private boolean loadSection(int x, int y, int z) {
         RenderRegion region = this.regions.createRegionForChunk(x, y, z);
 
-        RenderSection render = new RenderSection(this.worldRenderer, x, y, z, region);
+        int id = this.graph.add(x, y, z);
+
+        RenderSection render = new RenderSection(this.worldRenderer, id, x, y, z, region);
         region.addChunk(render);
 
-        this.sections.put(SectionPos.asLong(x, y, z), render);
+        this.graph.setSection(id, render);
+
+        this.sections.put(render);
 
         ChunkAccess chunk = this.world.getChunk(x, z);
         LevelChunkSection section = chunk.getSections()[this.world.getSectionIndexFromSectionY(y)];
@@ -271,7 +634,7 @@ public class RenderSectionManager {
     }
 
     private boolean unloadSection(int x, int y, int z) {
-        RenderSection chunk = this.sections.remove(SectionPos.asLong(x, y, z));
+        RenderSection chunk = this.sections.remove(x, y, z);
 
         if (chunk == null) {
             throw new IllegalStateException("Chunk is not loaded: " + SectionPos.of(x, y, z));
@@ -279,7 +642,11 @@ public class RenderSectionManager {
 
         chunk.delete();
 
-        this.disconnectNeighborNodes(chunk);
+        if (this.retainedSections.remove(chunk)) {
+            chunk.setRetainsGeometry(false);
+        }
+
+        this.graph.remove(chunk.getGraphId());
 
         RenderRegion region = chunk.getRegion();
         region.removeChunk(chunk);
@@ -309,22 +676,46 @@ public class RenderSectionManager {
             return false;
         }
 
-        return render.getGraphInfo()
-                .getLastVisibleFrame() == this.currentFrame;
+        return this.isSectionInView(render);
     }
 
     public void updateChunks() {
+        this.updateRebuildQueueCapacity();
+
+        this.updateBudget.beginFrame();
+        this.remainingScheduledTasks = this.updateBudget.getMaxScheduledTasks();
+
+        this.reprioritizeBuildTasks();
+        this.rescheduleFailedBuilds();
+
         var blockingFutures = this.submitRebuildTasks(ChunkUpdateType.IMPORTANT_REBUILD);
 
         this.submitRebuildTasks(ChunkUpdateType.INITIAL_BUILD);
         this.submitRebuildTasks(ChunkUpdateType.REBUILD);
 
+        // Wake up the worker threads once for everything which was scheduled this frame
+        this.builder.flush();
+
         // Try to complete some other work on the main thread while we wait for rebuilds to complete
         this.needsUpdate |= this.performPendingUploads();
 
         if (!blockingFutures.isEmpty()) {
             this.needsUpdate = true;
+
+            int count = blockingFutures.size();
+            long start = System.nanoTime();
+
             this.regions.upload(RenderDevice.INSTANCE.createCommandList(), new WorkStealingFutureDrain<>(blockingFutures, this.builder::stealTask));
+
+            this.updateBudget.recordBlocking(count, System.nanoTime() - start);
+        }
+
+        this.compactedBytes = this.regions.compact(MAX_COMPACTION_BYTES);
+
+        // Arenas are only shrunk while nothing is being built, as shrinking them right before they're needed again
+        // would be wasted work
+        if (blockingFutures.isEmpty() && this.builder.isBuildQueueEmpty()) {
+            this.reclaimedBytes += this.regions.shrink();
         }
 
         this.regions.cleanup();
@@ -332,9 +723,13 @@ public class RenderSectionManager {
 
     private LinkedList<CompletableFuture<ChunkBuildResult>> submitRebuildTasks(ChunkUpdateType filterType) {
         int budget = filterType.isImportant() ? Integer.MAX_VALUE : this.builder.getSchedulingBudget();
+        budget = Math.min(budget, this.remainingScheduledTasks);
 
         LinkedList<CompletableFuture<ChunkBuildResult>> immediateFutures = new LinkedList<>();
-        PriorityQueue<RenderSection> queue = this.rebuildQueues.get(filterType);
+        ChunkRebuildQueue queue = this.rebuildQueues.get(filterType);
+
+        int scheduled = 0;
+        long start = System.nanoTime();
 
         while (budget > 0 && !queue.isEmpty()) {
             RenderSection section = queue.dequeue();
@@ -352,7 +747,9 @@ public class RenderSectionManager {
             ChunkRenderBuildTask task = this.createRebuildTask(section);
             CompletableFuture<?> future;
 
-            if (filterType.isImportant()) {
+            // Important rebuilds which don't fit in this frame's budget for blocking work are still scheduled, but their
+            // results will be uploaded with the other deferred results instead of being waited on
+            if (filterType.isImportant() && immediateFutures.size() < this.updateBudget.getMaxBlockingTasks()) {
                 CompletableFuture<ChunkBuildResult> immediateFuture = this.builder.schedule(task);
                 immediateFutures.add(immediateFuture);
 
@@ -361,14 +758,57 @@ public class RenderSectionManager {
                 future = this.builder.scheduleDeferred(task);
             }
 
-            section.onBuildSubmitted(future);
+            section.onBuildSubmitted(future, this.currentFrame);
 
             budget--;
+            scheduled++;
         }
 
+        this.remainingScheduledTasks -= scheduled;
+        this.updateBudget.recordScheduling(scheduled, System.nanoTime() - start);
+
         return immediateFutures;
     }
 
+    /**
+     * Cancels any queued builds for sections which are no longer in view, and moves builds for nearby sections which
+     * are out of view behind the others. Cancelled sections are marked for an update again, so that they will be
+     * rebuilt once they come back into view.
+     */
+    private void reprioritizeBuildTasks() {
+        List<RenderSection> cancelled = this.builder.reprioritizeTasks(
+                section -> section.isDisposed() || (!this.isSectionInView(section) && !this.isChunkPrioritized(section)),
+                section -> !this.isSectionInView(section));
+
+        for (RenderSection section : cancelled) {
+            if (!section.isDisposed()) {
+                section.markForUpdate(section.isBuilt() ? ChunkUpdateType.REBUILD : ChunkUpdateType.INITIAL_BUILD);
+            }
+        }
+    }
+
+    /**
+     * Marks the sections of any builds which failed for a full rebuild, as their pending updates were already cleared
+     * when the builds were submitted.
+     */
+    private void rescheduleFailedBuilds() {
+        RenderSection section;
+
+        while ((section = this.builder.pollFailedBuild()) != null) {
+            if (!section.isDisposed()) {
+                section.markFullRebuild();
+                section.markForUpdate(section.isBuilt() ? ChunkUpdateType.REBUILD : ChunkUpdateType.INITIAL_BUILD);
+
+                // The section has to be found by the next search for it to be queued again
+                this.needsUpdate = true;
+            }
+        }
+    }
+
+    private boolean isSectionInView(RenderSection section) {
+        return this.graph.getLastVisibleFrame(section.getGraphId()) == this.traversalFrame;
+    }
+
     private boolean performPendingUploads() {
         Iterator<ChunkBuildResult> it = this.builder.createDeferredBuildResultDrain();
 
@@ -376,26 +816,84 @@ public class RenderSectionManager {
             return false;
         }
 
-        this.regions.upload(RenderDevice.INSTANCE.createCommandList(), it);
+        // Any results which don't fit in this frame's upload budget are left in the queue for the next frame
+        List<ChunkBuildResult> results = new ArrayList<>();
+
+        long maxBytes = this.updateBudget.getMaxUploadBytes();
+        long bytes = 0;
+
+        while (bytes < maxBytes && it.hasNext()) {
+            ChunkBuildResult result = it.next();
+            results.add(result);
+
+            bytes += result.getMeshSize();
+        }
+
+        long start = System.nanoTime();
+
+        this.regions.upload(RenderDevice.INSTANCE.createCommandList(), results.iterator());
+
+        this.updateBudget.recordUpload(bytes, System.nanoTime() - start);
 
         return true;
     }
 
     public ChunkRenderBuildTask createRebuildTask(RenderSection render) {
-        ChunkRenderContext context = WorldSlice.prepare(this.world, render.getChunkPos(), this.sectionCache);
         int frame = this.currentFrame;
 
-        if (context == null) {
+        // The world around the section is cloned by the worker thread, so only perform the cheap check for an empty
+        // section here
+        if (WorldSlice.isSectionEmpty(this.world, render.getChunkPos())) {
             return new ChunkRenderEmptyBuildTask(render, frame);
         }
 
-        return new ChunkRenderRebuildTask(render, context, frame);
+        RetainedChunkGeometry retainedGeometry = render.getRetainedGeometry();
+        long[] dirtyBlocks = render.getDirtyBlocks();
+
+        // Sections which have had single blocks changed are likely to have more changed soon, so their geometry is kept
+        // in order to re-mesh only the blocks around the next change
+        boolean retainGeometry = (dirtyBlocks != null && dirtyBlocks.length > 0) || render.retainsGeometry();
+
+        if (retainGeometry) {
+            this.retainGeometry(render);
+        }
+
+        if (retainedGeometry != null) {
+            return new ChunkRenderRebuildTask(render, this.world, this.sectionCache, frame,
+                    retainedGeometry, dirtyBlocks, render.getData().getAnimatedSprites());
+        }
+
+        return new ChunkRenderRebuildTask(render, this.world, this.sectionCache, frame);
+    }
+
+    /**
+     * Marks the section as one which keeps its geometry after being built, and evicts the least recently rebuilt
+     * section if too many sections are already keeping theirs.
+     */
+    private void retainGeometry(RenderSection render) {
+        this.retainedSections.addAndMoveToLast(render);
+
+        render.setRetainsGeometry(true);
+
+        while (this.retainedSections.size() > MAX_RETAINED_SECTIONS) {
+            this.retainedSections.removeFirst()
+                    .setRetainsGeometry(false);
+        }
     }
 
     public void markGraphDirty() {
         this.needsUpdate = true;
     }
 
+    /**
+     * Forces the visibility graph to be traversed from scratch on the next update, even if incremental traversal
+     * would otherwise allow the last visible set to be re-used.
+     */
+    public void invalidateGraph() {
+        this.needsUpdate = true;
+        this.needsGraphTraversal = true;
+    }
+
     public boolean isGraphDirty() {
         return this.needsUpdate;
     }
@@ -413,6 +911,10 @@ public class RenderSectionManager {
 
         this.chunkRenderer.delete();
         this.builder.stopWorkers();
+
+        if (this.traversalPool != null) {
+            this.traversalPool.shutdown();
+        }
     }
 
     public int getTotalSections() {
@@ -432,7 +934,36 @@ public class RenderSectionManager {
     public void scheduleRebuild(int x, int y, int z, boolean important) {
         this.sectionCache.invalidate(x, y, z);
 
-        RenderSection section = this.sections.get(SectionPos.asLong(x, y, z));
+        RenderSection section = this.sections.get(x, y, z);
+
+        if (section != null) {
+            section.markFullRebuild();
+        }
+
+        if (section != null && section.isBuilt()) {
+            if (!this.alwaysDeferChunkUpdates && (important || this.isChunkPrioritized(section))) {
+                section.markForUpdate(ChunkUpdateType.IMPORTANT_REBUILD);
+            } else {
+                section.markForUpdate(ChunkUpdateType.REBUILD);
+            }
+        }
+
+        this.needsUpdate = true;
+    }
+
+    /**
+     * Schedules a rebuild of the section at the given section coordinates after a single block within or next to it has
+     * changed. Unlike {@link RenderSectionManager#scheduleRebuild(int, int, int, boolean)}, the rebuild may only re-mesh
+     * the blocks around the changed block.
+     */
+    public void scheduleBlockRebuild(int x, int y, int z, int blockX, int blockY, int blockZ, boolean important) {
+        this.sectionCache.invalidate(x, y, z);
+
+        RenderSection section = this.sections.get(x, y, z);
+
+        if (section != null) {
+            section.markBlockForUpdate(blockX, blockY, blockZ);
+        }
 
         if (section != null && section.isBuilt()) {
             if (!this.alwaysDeferChunkUpdates && (important || this.isChunkPrioritized(section))) {
@@ -453,29 +984,36 @@ public class RenderSectionManager {
         RenderSection node = this.getRenderSection(x, y, z);
 
         if (node != null) {
-            node.setOcclusionData(data.getOcclusionData());
+            if (this.graph.setOcclusionData(node.getGraphId(), data.getOcclusionData())) {
+                this.needsGraphTraversal = true;
+            }
+
+            // The render lists need to be re-built as the section may have become empty (or non-empty), or its block
+            // entities may have changed
+            this.needsListRebuild = true;
+            this.needsUpdate = true;
         }
     }
 
-    private boolean isWithinRenderDistance(RenderSection adj) {
-        int x = Math.abs(adj.getChunkX() - this.centerChunkX);
-        int z = Math.abs(adj.getChunkZ() - this.centerChunkZ);
+    private boolean isWithinRenderDistance(int node) {
+        int x = Math.abs(this.graph.getChunkX(node) - this.centerChunkX);
+        int z = Math.abs(this.graph.getChunkZ(node) - this.centerChunkZ);
 
         return x <= this.renderDistance && z <= this.renderDistance;
     }
 
-    private boolean isCulled(ChunkGraphInfo node, Direction from, Direction to) {
-        if (node.canCull(to)) {
+    private boolean isCulled(int node, Direction from, Direction to) {
+        if (this.graph.canCull(node, to)) {
             return true;
         }
 
-        return this.useOcclusionCulling && from != null && !node.isVisibleThrough(from, to);
+        return this.useOcclusionCulling && from != null && !this.graph.isVisibleThrough(node, from, to);
     }
 
-    private void initSearch(Camera camera, Frustum frustum, int frame, boolean spectator) {
-        this.currentFrame = frame;
+    private void initSearch(Camera camera, Frustum frustum, int frame, boolean occlusionCulling) {
+        this.traversalFrame = frame;
         this.frustum = frustum;
-        this.useOcclusionCulling = Minecraft.getInstance().smartCull;
+        this.useOcclusionCulling = occlusionCulling;
 
         this.iterationQueue.clear();
 
@@ -491,15 +1029,11 @@ public class RenderSectionManager {
         RenderSection rootRender = this.getRenderSection(chunkX, chunkY, chunkZ);
 
         if (rootRender != null) {
-            ChunkGraphInfo rootInfo = rootRender.getGraphInfo();
-            rootInfo.resetCullingState();
-            rootInfo.setLastVisibleFrame(frame);
+            int root = rootRender.getGraphId();
+            this.graph.resetCullingState(root);
+            this.graph.setLastVisibleFrame(root, frame);
 
-            if (spectator && this.world.getBlockState(origin).isSolidRender(this.world, origin)) {
-                this.useOcclusionCulling = false;
-            }
-
-            this.addVisible(rootRender, null);
+            this.addVisible(root, null);
         } else {
             chunkY = Mth.clamp(origin.getY() >> 4, this.world.getMinSection(), this.world.getMaxSection() - 1);
 
@@ -513,14 +1047,14 @@ public class RenderSectionManager {
                         continue;
                     }
 
-                    ChunkGraphInfo info = render.getGraphInfo();
+                    int node = render.getGraphId();
 
-                    if (info.isCulledByFrustum(frustum)) {
+                    if (this.graph.isCulledByFrustum(node, frustum)) {
                         continue;
                     }
 
-                    info.resetCullingState();
-                    info.setLastVisibleFrame(frame);
+                    this.graph.resetCullingState(node);
+                    this.graph.setLastVisibleFrame(node, frame);
 
                     sorted.add(render);
                 }
@@ -529,36 +1063,41 @@ public class RenderSectionManager {
             sorted.sort(Comparator.comparingDouble(node -> node.getSquaredDistance(origin)));
 
             for (RenderSection render : sorted) {
-                this.addVisible(render, null);
+                this.addVisible(render.getGraphId(), null);
             }
         }
     }
 
 
-    private void bfsEnqueue(RenderSection parent, RenderSection render, Direction flow) {
-        ChunkGraphInfo info = render.getGraphInfo();
-
-        if (info.getLastVisibleFrame() == this.currentFrame) {
-            return;
+    private boolean canEnqueue(int parent, int node) {
+        if (this.graph.getLastVisibleFrame(node) == this.traversalFrame) {
+            return false;
         }
 
-        Frustum.Visibility parentVisibility = parent.getRegion().getVisibility();
+        Frustum.Visibility parentVisibility = this.graph.getSection(parent).getRegion().getVisibility();
 
         if (parentVisibility == Frustum.Visibility.OUTSIDE) {
-            return;
-        } else if (parentVisibility == Frustum.Visibility.INTERSECT && info.isCulledByFrustum(this.frustum)) {
-            return;
+            return false;
+        } else if (parentVisibility == Frustum.Visibility.INTERSECT && this.graph.isCulledByFrustum(node, this.frustum)) {
+            return false;
         }
 
-        info.setLastVisibleFrame(this.currentFrame);
-        info.setCullingState(parent.getGraphInfo().getCullingState(), flow);
+        return true;
+    }
+
+    private void markVisible(int parent, int node, Direction flow) {
+        this.graph.setLastVisibleFrame(node, this.traversalFrame);
+        this.graph.setCullingState(node, this.graph.getCullingState(parent), flow);
 
-        this.addVisible(render, flow);
+        this.addVisible(node, flow);
     }
 
-    private void addVisible(RenderSection render, Direction flow) {
-        this.iterationQueue.add(render, flow);
+    private void addVisible(int node, Direction flow) {
+        this.iterationQueue.add(node, flow);
+        this.addToRenderLists(this.graph.getSection(node));
+    }
 
+    private void addToRenderLists(RenderSection render) {
         if (this.useFogCulling && render.getSquaredDistanceXZ(this.cameraX, this.cameraZ) >= this.fogRenderCutoff) {
             return;
         }
@@ -576,53 +1115,110 @@ public class RenderSectionManager {
                     render.getChunkZ() + dir.getStepZ());
 
             if (adj != null) {
-                adj.setAdjacentNode(DirectionUtil.getOpposite(dir), render);
-                render.setAdjacentNode(dir, adj);
-            }
-        }
-    }
-
-    private void disconnectNeighborNodes(RenderSection render) {
-        for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
-            RenderSection adj = render.getAdjacent(dir);
-
-            if (adj != null) {
-                adj.setAdjacentNode(DirectionUtil.getOpposite(dir), null);
-                render.setAdjacentNode(dir, null);
+                this.graph.connect(render.getGraphId(), dir, adj.getGraphId());
             }
         }
     }
 
     private RenderSection getRenderSection(int x, int y, int z) {
-        return this.sections.get(SectionPos.asLong(x, y, z));
+        return this.sections.get(x, y, z);
     }
 
     public Collection<String> getDebugStrings() {
         List<String> list = new ArrayList<>();
 
-        Iterator<RenderRegion.RenderRegionArenas> it = this.regions.getLoadedRegions()
-                .stream()
-                .map(RenderRegion::getArenas)
-                .filter(Objects::nonNull)
+        Iterator<RenderRegion.RenderRegionArenas> it = this.regions.getLoadedArenas()
                 .iterator();
 
         int count = 0;
 
         long deviceUsed = 0;
         long deviceAllocated = 0;
+        long deviceDeduplicated = 0;
 
         while (it.hasNext()) {
             RenderRegion.RenderRegionArenas arena = it.next();
             deviceUsed += arena.getDeviceUsedMemory();
             deviceAllocated += arena.getDeviceAllocatedMemory();
+            deviceDeduplicated += arena.getDeduplicatedMemory();
 
             count++;
         }
 
-        list.add(String.format("Chunk arena allocator: %s", SodiumClientMod.options().advanced.arenaMemoryAllocator.name()));
+        list.add(String.format("Chunk arena allocator: %s", this.regions.getArenaAllocator().name()));
+        list.add(String.format("Chunk renderer: %s", this.chunkRenderer.getClass().getSimpleName()));
         list.add(String.format("Device buffer objects: %d", count));
         list.add(String.format("Device memory: %d/%d MiB", MathUtil.toMib(deviceUsed), MathUtil.toMib(deviceAllocated)));
+
+        if (this.regions.getQuadIndexBuffer() != null) {
+            list.add(String.format("Shared quad indices: %d KiB", this.regions.getQuadIndexBuffer().getDeviceAllocatedMemory() / 1024));
+        }
+
+        // Deduplication has no effect when the shared quad indices are used, as there is no other index data to share
+        if (SodiumClientMod.options().advanced.deduplicateMeshData && this.regions.getQuadIndexBuffer() == null) {
+            list.add(String.format("Deduplicated memory: %d KiB", deviceDeduplicated / 1024));
+        }
+
         list.add(String.format("Staging buffer: %s", this.regions.getStagingBuffer().toString()));
+        list.add(String.format("Arena compaction: %d KiB/frame, %d MiB reclaimed", this.compactedBytes / 1024,
+                MathUtil.toMib(this.reclaimedBytes)));
+        list.add(String.format("Chunk update budget: %d tasks, %d blocking, %d KiB (%.1f ms/frame)",
+                this.updateBudget.getMaxScheduledTasks(), this.updateBudget.getMaxBlockingTasks(),
+                this.updateBudget.getMaxUploadBytes() / 1024, this.updateBudget.getFrameTime()));
+        list.add(String.format("Section clone cache: %d MiB, %d hits, %d misses",
+                MathUtil.toMib(this.sectionCache.getMemoryUsage()), this.sectionCache.getHitCount(), this.sectionCache.getMissCount()));
+
+        ChunkMeshCache meshCache = this.builder.getMeshCache();
+
+        if (meshCache.isEnabled()) {
+            list.add(String.format("Section mesh cache: %d MiB, %d hits, %d misses",
+                    MathUtil.toMib(meshCache.getMemoryUsage()), meshCache.getHitCount(), meshCache.getMissCount()));
+
+            if (meshCache.hasDiskCache()) {
+                list.add(String.format("Section mesh disk cache: %d hits", meshCache.getDiskHitCount()));
+            }
+        }
         return list;
     }
+
+    private class FindNeighborsTask extends RecursiveAction {
+        private final int[] candidates;
+        private final int levelStart;
+
+        private final int start, end;
+
+        private FindNeighborsTask(int[] candidates, int levelStart, int start, int end) {
+            this.candidates = candidates;
+            this.levelStart = levelStart;
+
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start > PARALLEL_TRAVERSAL_TASK_SIZE) {
+                int mid = (this.start + this.end) >>> 1;
+
+                invokeAll(new FindNeighborsTask(this.candidates, this.levelStart, this.start, mid),
+                        new FindNeighborsTask(this.candidates, this.levelStart, mid, this.end));
+
+                return;
+            }
+
+            ChunkGraphIterationQueue queue = RenderSectionManager.this.iterationQueue;
+            Direction[] directions = DirectionUtil.ALL_DIRECTIONS;
+
+            for (int i = this.start; i < this.end; i++) {
+                int node = queue.getNode(i);
+                Direction flow = queue.getDirection(i);
+
+                int base = (i - this.levelStart) * directions.length;
+
+                for (int j = 0; j < directions.length; j++) {
+                    this.candidates[base + j] = RenderSectionManager.this.findTraversableNeighbor(node, flow, directions[j]);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,134 @@
+package me.jellysquid.mods.sodium.client.render.chunk;
+
+import it.unimi.dsi.fastutil.longs.Long2ReferenceMap;
+import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.core.SectionPos;
+
+/**
+ * Stores the render sections of a world in a flat array which wraps around on the horizontal axes, similar to the
+ * client's own chunk storage. Since the loaded area moves with the camera, every loaded section maps to a unique slot
+ * as long as the world does not keep sections further than {@link #getRadius()} chunks apart.
+ *
+ * The server is free to send chunks outside the client's render distance, so sections which collide with an
+ * occupied slot are kept in a (normally empty) fallback map instead of being dropped.
+ */
+public class RenderSectionStorage {
+    private final RenderSection[] sections;
+
+    private final Long2ReferenceMap<RenderSection> overflow = new Long2ReferenceOpenHashMap<>();
+
+    private final int radius;
+    private final int diameter;
+
+    private final int minY, height;
+
+    public RenderSectionStorage(int radius, int minY, int maxY) {
+        this.radius = radius;
+        this.diameter = (radius * 2) + 1;
+
+        this.minY = minY;
+        this.height = maxY - minY;
+
+        this.sections = new RenderSection[this.diameter * this.diameter * this.height];
+    }
+
+    public RenderSection get(int x, int y, int z) {
+        int index = this.getIndex(x, y, z);
+
+        if (index < 0) {
+            return null;
+        }
+
+        RenderSection section = this.sections[index];
+
+        if (section != null && isAt(section, x, y, z)) {
+            return section;
+        }
+
+        if (this.overflow.isEmpty()) {
+            return null;
+        }
+
+        return this.overflow.get(SectionPos.asLong(x, y, z));
+    }
+
+    public void put(RenderSection section) {
+        int x = section.getChunkX();
+        int y = section.getChunkY();
+        int z = section.getChunkZ();
+
+        int index = this.getIndex(x, y, z);
+
+        if (index < 0) {
+            throw new IllegalStateException("Section is outside the height of the world: " + SectionPos.of(x, y, z));
+        }
+
+        if (this.sections[index] == null) {
+            this.sections[index] = section;
+        } else {
+            this.overflow.put(SectionPos.asLong(x, y, z), section);
+        }
+    }
+
+    public RenderSection remove(int x, int y, int z) {
+        int index = this.getIndex(x, y, z);
+
+        if (index < 0) {
+            return null;
+        }
+
+        RenderSection section = this.sections[index];
+
+        if (section == null || !isAt(section, x, y, z)) {
+            return this.overflow.isEmpty() ? null : this.overflow.remove(SectionPos.asLong(x, y, z));
+        }
+
+        this.sections[index] = null;
+
+        if (!this.overflow.isEmpty()) {
+            this.promoteOverflow(index);
+        }
+
+        return section;
+    }
+
+    /**
+     * Moves a section which collided with the now empty slot back into the array, if one exists.
+     */
+    private void promoteOverflow(int index) {
+        ObjectIterator<RenderSection> it = this.overflow.values().iterator();
+
+        while (it.hasNext()) {
+            RenderSection section = it.next();
+
+            if (this.getIndex(section.getChunkX(), section.getChunkY(), section.getChunkZ()) == index) {
+                this.sections[index] = section;
+                it.remove();
+
+                break;
+            }
+        }
+    }
+
+    private int getIndex(int x, int y, int z) {
+        int localY = y - this.minY;
+
+        if (localY < 0 || localY >= this.height) {
+            return -1;
+        }
+
+        int localX = Math.floorMod(x, this.diameter);
+        int localZ = Math.floorMod(z, this.diameter);
+
+        return (((localY * this.diameter) + localZ) * this.diameter) + localX;
+    }
+
+    private static boolean isAt(RenderSection section, int x, int y, int z) {
+        return section.getChunkX() == x && section.getChunkY() == y && section.getChunkZ() == z;
+    }
+
+    public int getRadius() {
+        return this.radius;
+    }
+}
@@ -59,6 +59,7 @@ public abstract class ShaderChunkRenderer implements ChunkRenderer {
                     .bindAttribute("a_Color", ChunkShaderBindingPoints.ATTRIBUTE_COLOR)
                     .bindAttribute("a_TexCoord", ChunkShaderBindingPoints.ATTRIBUTE_BLOCK_TEXTURE)
                     .bindAttribute("a_LightCoord", ChunkShaderBindingPoints.ATTRIBUTE_LIGHT_TEXTURE)
+                    .bindAttribute("a_RegionOffset", ChunkShaderBindingPoints.ATTRIBUTE_REGION_OFFSET)
                     .bindFragmentData("fragColor", ChunkShaderBindingPoints.FRAG_COLOR)
                     .link((shader) -> new ChunkShaderInterface(shader, options));
         } finally {
@@ -68,7 +69,10 @@ public abstract class ShaderChunkRenderer implements ChunkRenderer {
     }
 
     protected void begin(BlockRenderPass pass) {
-        ChunkShaderOptions options = new ChunkShaderOptions(ChunkFogMode.SMOOTH, pass, this.vertexType);
+        this.begin(new ChunkShaderOptions(ChunkFogMode.SMOOTH, pass, this.vertexType));
+    }
+
+    protected void begin(ChunkShaderOptions options) {
 
         this.activeProgram = this.compileProgram(options);
         this.activeProgram.bind();
@@ -0,0 +1,83 @@
+package me.jellysquid.mods.sodium.client.render.chunk;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBufferUsage;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlMutableBuffer;
+import me.jellysquid.mods.sodium.client.gl.device.CommandList;
+import me.jellysquid.mods.sodium.client.gl.tessellation.GlIndexType;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An element buffer containing the indices of a long run of quads, where each quad is made up of four consecutive
+ * vertices. Chunk meshes which are built with their vertices in this order can be drawn with this buffer instead of
+ * uploading index data of their own, by starting at the first index and setting the base vertex to the first vertex of
+ * the mesh.
+ *
+ * The buffer grows to fit the largest mesh which has been uploaded, but never shrinks. When it grows, the existing
+ * buffer object is re-specified, so any tessellations which refer to it remain valid.
+ */
+public class SharedQuadIndexBuffer {
+    public static final GlIndexType INDEX_TYPE = GlIndexType.UNSIGNED_INT;
+
+    private static final int INITIAL_QUAD_COUNT = 16384;
+
+    private final GlMutableBuffer buffer;
+    private int maxQuads;
+
+    public SharedQuadIndexBuffer(CommandList commandList) {
+        this.buffer = commandList.createMutableBuffer();
+
+        this.grow(commandList, INITIAL_QUAD_COUNT);
+    }
+
+    /**
+     * Grows the buffer so that it contains at least the given number of indices.
+     */
+    public void ensureCapacity(CommandList commandList, int indexCount) {
+        int quadCount = (indexCount + 5) / 6;
+
+        if (quadCount > this.maxQuads) {
+            this.grow(commandList, HashCommon.nextPowerOfTwo(quadCount));
+        }
+    }
+
+    private void grow(CommandList commandList, int quadCount) {
+        ByteBuffer data = MemoryUtil.memAlloc(quadCount * 6 * INDEX_TYPE.getStride());
+
+        for (int quad = 0; quad < quadCount; quad++) {
+            int vertex = quad * 4;
+
+            data.putInt(vertex);
+            data.putInt(vertex + 1);
+            data.putInt(vertex + 2);
+            data.putInt(vertex + 2);
+            data.putInt(vertex + 3);
+            data.putInt(vertex);
+        }
+
+        data.flip();
+
+        try {
+            commandList.uploadData(this.buffer, data, GlBufferUsage.STATIC_DRAW);
+        } finally {
+            MemoryUtil.memFree(data);
+        }
+
+        this.maxQuads = quadCount;
+    }
+
+    public GlBuffer getBufferObject() {
+        return this.buffer;
+    }
+
+    public long getDeviceAllocatedMemory() {
+        return this.buffer.getSize();
+    }
+
+    public void delete(CommandList commandList) {
+        commandList.deleteBuffer(this.buffer);
+    }
+}
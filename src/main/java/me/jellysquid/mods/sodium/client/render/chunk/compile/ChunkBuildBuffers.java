@@ -1,11 +1,13 @@
 package me.jellysquid.mods.sodium.client.render.chunk.compile;
 
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.gl.buffer.IndexedVertexData;
 import me.jellysquid.mods.sodium.client.gl.util.ElementRange;
 import me.jellysquid.mods.sodium.client.model.IndexBufferBuilder;
 import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
 import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferBuilder;
 import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.SharedQuadIndexBuffer;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.BakedChunkModelBuilder;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.ChunkModelBuilder;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
@@ -16,6 +18,7 @@ import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManag
 import me.jellysquid.mods.sodium.client.util.NativeBuffer;
 import net.minecraft.client.renderer.RenderType;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.Map;
@@ -36,9 +39,13 @@ public class ChunkBuildBuffers {
 
     private final BlockRenderPassManager renderPassManager;
 
+    // If true, meshes contain no index data of their own and are drawn with a shared quad index buffer
+    private final boolean useSharedQuadIndices;
+
     public ChunkBuildBuffers(ChunkVertexType vertexType, BlockRenderPassManager renderPassManager) {
         this.vertexType = vertexType;
         this.renderPassManager = renderPassManager;
+        this.useSharedQuadIndices = SodiumClientMod.options().advanced.useSharedQuadIndices;
 
         this.delegates = new ChunkModelBuilder[BlockRenderPass.COUNT];
 
@@ -84,12 +91,44 @@ public class ChunkBuildBuffers {
         return this.delegates[this.renderPassManager.getRenderPassId(layer)];
     }
 
+    public int getVertexStride() {
+        return this.vertexType.getBufferVertexFormat().getStride();
+    }
+
+    public ChunkModelBuilder get(BlockRenderPass pass) {
+        return this.delegates[pass.ordinal()];
+    }
+
+    /**
+     * @return A copy of the vertex data which has been written for the given pass so far
+     */
+    public ByteBuffer copyVertexData(BlockRenderPass pass) {
+        VertexBufferBuilder vertexBuffer = this.vertexBuffers[pass.ordinal()];
+        int length = vertexBuffer.getWriterPosition();
+
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        copy.put(0, vertexBuffer.getDirectBuffer(), 0, length);
+
+        return copy;
+    }
+
+    /**
+     * @return A copy of the indices which have been written for the given pass and facing so far
+     */
+    public int[] copyIndexData(BlockRenderPass pass, ModelQuadFacing facing) {
+        return this.indexBuffers[pass.ordinal()][facing.ordinal()].toArray();
+    }
+
     /**
      * Creates immutable baked chunk meshes from all non-empty scratch buffers. This is used after all blocks
      * have been rendered to pass the finished meshes over to the graphics card. This function can be called multiple
      * times to return multiple copies.
      */
     public ChunkMeshData createMesh(BlockRenderPass pass) {
+        if (this.useSharedQuadIndices) {
+            return this.createQuadMesh(pass);
+        }
+
         NativeBuffer vertexBuffer = this.vertexBuffers[pass.ordinal()].pop();
 
         if (vertexBuffer == null) {
@@ -128,6 +167,54 @@ public class ChunkBuildBuffers {
         return new ChunkMeshData(vertexData, ranges);
     }
 
+    /**
+     * Creates a chunk mesh without any index data, where the vertices of each facing are re-ordered so that every quad
+     * can be drawn with the indices of the shared quad index buffer. Each part of the mesh starts at the beginning of
+     * the shared buffer, and its base vertex selects the first vertex of the part.
+     */
+    private ChunkMeshData createQuadMesh(BlockRenderPass pass) {
+        VertexBufferBuilder vertexBuilder = this.vertexBuffers[pass.ordinal()];
+
+        if (vertexBuilder.getWriterPosition() == 0) {
+            return null;
+        }
+
+        IndexBufferBuilder.Result[] indexBuffers = Arrays.stream(this.indexBuffers[pass.ordinal()])
+                .map(IndexBufferBuilder::pop)
+                .toArray(IndexBufferBuilder.Result[]::new);
+
+        int stride = this.getVertexStride();
+
+        // Each quad is written as four vertices, even if the quad shares some of its vertices with another one
+        NativeBuffer vertexBuffer = new NativeBuffer(Arrays.stream(indexBuffers)
+                .filter(Objects::nonNull)
+                .mapToInt(indices -> (indices.getCount() / 6) * 4 * stride)
+                .sum());
+
+        int vertexPointer = 0;
+
+        Map<ModelQuadFacing, ElementRange> ranges = new EnumMap<>(ModelQuadFacing.class);
+
+        for (ModelQuadFacing facing : ModelQuadFacing.VALUES) {
+            IndexBufferBuilder.Result indices = indexBuffers[facing.ordinal()];
+
+            if (indices == null) {
+                continue;
+            }
+
+            ranges.put(facing,
+                    new ElementRange(0, indices.getCount(), SharedQuadIndexBuffer.INDEX_TYPE, vertexPointer / stride));
+
+            vertexPointer = indices.writeQuadVertices(vertexBuilder.getDirectBuffer(), vertexBuffer.getDirectBuffer(),
+                    vertexPointer, stride);
+        }
+
+        IndexedVertexData vertexData = new IndexedVertexData(this.vertexType.getCustomVertexFormat(),
+                vertexBuffer, new NativeBuffer(0));
+
+        return new ChunkMeshData(vertexData, ranges);
+    }
+
     public void destroy() {
         for (VertexBufferBuilder builder : this.vertexBuffers) {
             builder.destroy();
@@ -11,6 +11,9 @@ import java.util.Map;
  * The result of a chunk rebuild task which contains any and all data that needs to be processed or uploaded on
  * the main thread. If a task is cancelled after finishing its work and not before the result is processed, the result
  * will instead be discarded.
+ *
+ * A task can also produce a partial result with the meshes of some of its passes before it finishes, followed by a final
+ * result with the meshes of the remaining passes. Only the passes of a result are replaced when it is uploaded.
  */
 public class ChunkBuildResult {
     public final RenderSection render;
@@ -18,17 +21,53 @@ public class ChunkBuildResult {
     public final Map<BlockRenderPass, ChunkMeshData> meshes;
     public final int buildTime;
 
+    // The geometry which was kept for re-meshing only part of the section later, or null if none was kept
+    public final RetainedChunkGeometry retainedGeometry;
+
+    // The passes which this result replaces the meshes of, including those which no longer have any geometry
+    public final BlockRenderPass[] passes;
+
+    // True if the task will produce another result for the remaining passes
+    public final boolean partial;
+
     public ChunkBuildResult(RenderSection render, ChunkRenderData data, Map<BlockRenderPass, ChunkMeshData> meshes, int buildTime) {
+        this(render, data, meshes, buildTime, null);
+    }
+
+    public ChunkBuildResult(RenderSection render, ChunkRenderData data, Map<BlockRenderPass, ChunkMeshData> meshes, int buildTime,
+                            RetainedChunkGeometry retainedGeometry) {
+        this(render, data, meshes, buildTime, retainedGeometry, BlockRenderPass.VALUES, false);
+    }
+
+    public ChunkBuildResult(RenderSection render, ChunkRenderData data, Map<BlockRenderPass, ChunkMeshData> meshes, int buildTime,
+                            RetainedChunkGeometry retainedGeometry, BlockRenderPass[] passes, boolean partial) {
         this.render = render;
         this.data = data;
         this.meshes = meshes;
         this.buildTime = buildTime;
+        this.retainedGeometry = retainedGeometry;
+        this.passes = passes;
+        this.partial = partial;
     }
 
     public ChunkMeshData getMesh(BlockRenderPass pass) {
         return this.meshes.get(pass);
     }
 
+    /**
+     * @return The total size in bytes of the mesh data which will be uploaded for this result
+     */
+    public long getMeshSize() {
+        long size = 0;
+
+        for (ChunkMeshData data : this.meshes.values()) {
+            size += data.getVertexData().vertexBuffer().getLength();
+            size += data.getVertexData().indexBuffer().getLength();
+        }
+
+        return size;
+    }
+
     public void delete() {
         for (ChunkMeshData data : this.meshes.values()) {
             data.getVertexData()
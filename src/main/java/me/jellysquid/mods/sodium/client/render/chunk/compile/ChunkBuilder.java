@@ -3,10 +3,13 @@ package me.jellysquid.mods.sodium.client.render.chunk.compile;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.gl.compile.ChunkBuildContext;
 import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManager;
 import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderBuildTask;
+import me.jellysquid.mods.sodium.client.render.pipeline.BlockRenderInfoCache;
 import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
 import me.jellysquid.mods.sodium.common.util.collections.QueueDrainingIterator;
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.util.Mth;
 import net.minecraft.world.level.Level;
@@ -16,25 +19,45 @@ import org.apache.logging.log4j.Logger;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
 
 public class ChunkBuilder {
     private static final Logger LOGGER = LogManager.getLogger("ChunkBuilder");
 
-    private final Deque<WrappedTask> buildQueue = new ConcurrentLinkedDeque<>();
+    /**
+     * Each worker thread has its own queue of tasks, which tasks are distributed across when they are scheduled. When a
+     * worker runs out of tasks, it will steal tasks from the queues of other workers before going to sleep.
+     */
+    private final List<Deque<WrappedTask>> buildQueues = new ArrayList<>();
+    private final AtomicInteger queuedTaskCount = new AtomicInteger();
+    private int nextBuildQueue;
 
-    private final Object jobNotifier = new Object();
+    private final Queue<WorkerRunnable> idleWorkers = new ConcurrentLinkedQueue<>();
+    private int unsignalledTaskCount;
 
     private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong completedTasks = new AtomicLong();
     private final List<Thread> threads = new ArrayList<>();
+    private final List<WorkerRunnable> workers = new ArrayList<>();
 
     private Level world;
     private BlockRenderPassManager renderPassManager;
+    private BlockRenderInfoCache blockRenderInfo;
+    private ChunkMeshCache meshCache;
 
     private final int limitThreads;
     private final ChunkVertexType vertexType;
 
     private final Queue<ChunkBuildResult> deferredResultQueue = new ConcurrentLinkedDeque<>();
+
+    // The sections whose builds failed with an exception, which need to be marked for an update again by the main thread
+    private final Queue<RenderSection> failedBuilds = new ConcurrentLinkedQueue<>();
     private final ThreadLocal<ChunkBuildContext> localContexts = new ThreadLocal<>();
 
     public ChunkBuilder(ChunkVertexType vertexType) {
@@ -47,7 +70,19 @@ public class ChunkBuilder {
      * spawn more tasks than the budget allows, it will block until resources become available.
      */
     public int getSchedulingBudget() {
-        return Math.max(0, this.limitThreads - this.buildQueue.size());
+        return Math.max(0, this.limitThreads - this.queuedTaskCount.get());
+    }
+
+    public ChunkMeshCache getMeshCache() {
+        return this.meshCache;
+    }
+
+    /**
+     * @return The total number of build tasks which have been completed by this builder, including tasks which were
+     * stolen by other threads
+     */
+    public long getCompletedTaskCount() {
+        return this.completedTasks.get();
     }
 
     /**
@@ -64,16 +99,26 @@ public class ChunkBuilder {
         }
 
         for (int i = 0; i < this.limitThreads; i++) {
-            ChunkBuildContext context = new ChunkBuildContext(this.world, this.vertexType, this.renderPassManager);
-            WorkerRunnable worker = new WorkerRunnable(context);
+            this.buildQueues.add(new ConcurrentLinkedDeque<>());
+        }
+
+        for (int i = 0; i < this.limitThreads; i++) {
+            ChunkBuildContext context = new ChunkBuildContext(this.world, this.vertexType, this.renderPassManager, this.blockRenderInfo, this.meshCache);
+            WorkerRunnable worker = new WorkerRunnable(context, i);
 
             Thread thread = new Thread(worker, "Chunk Render Task Executor #" + i);
             thread.setPriority(Math.max(0, Thread.NORM_PRIORITY - 2));
-            thread.start();
 
+            worker.thread = thread;
+
+            this.workers.add(worker);
             this.threads.add(thread);
         }
 
+        for (Thread thread : this.threads) {
+            thread.start();
+        }
+
         LOGGER.info("Started {} worker threads", this.threads.size());
     }
 
@@ -93,9 +138,9 @@ public class ChunkBuilder {
 
         LOGGER.info("Stopping worker threads");
 
-        // Notify all worker threads to wake up, where they will then terminate
-        synchronized (this.jobNotifier) {
-            this.jobNotifier.notifyAll();
+        // Wake up all worker threads, where they will then terminate
+        for (Thread thread : this.threads) {
+            LockSupport.unpark(thread);
         }
 
         // Wait for every remaining thread to terminate
@@ -107,10 +152,14 @@ public class ChunkBuilder {
         }
 
         this.threads.clear();
+        this.workers.clear();
+        this.idleWorkers.clear();
 
         // Delete any queued tasks and resources attached to them
-        for (WrappedTask job : this.buildQueue) {
-            job.future.cancel(true);
+        for (Deque<WrappedTask> queue : this.buildQueues) {
+            for (WrappedTask job : queue) {
+                job.future.cancel(true);
+            }
         }
 
         // Delete any results in the deferred queue
@@ -119,32 +168,122 @@ public class ChunkBuilder {
                     .delete();
         }
 
-        this.buildQueue.clear();
+        this.failedBuilds.clear();
+
+        this.buildQueues.clear();
+        this.queuedTaskCount.set(0);
+        this.unsignalledTaskCount = 0;
+
+        // No more tasks can use the cached meshes once all workers have stopped
+        if (this.meshCache != null) {
+            this.meshCache.clear();
+        }
 
         this.world = null;
     }
 
+    /**
+     * Adds a task to the build queue. Worker threads are not woken up until {@link ChunkBuilder#flush()} is called, so
+     * that many tasks can be handed out with a single wake-up. This must only be called from the main thread.
+     */
     public CompletableFuture<ChunkBuildResult> schedule(ChunkRenderBuildTask task) {
+        return this.schedule(task, false);
+    }
+
+    private CompletableFuture<ChunkBuildResult> schedule(ChunkRenderBuildTask task, boolean deferred) {
         if (!this.running.get()) {
             throw new IllegalStateException("Executor is stopped");
         }
 
-        WrappedTask job = new WrappedTask(task);
+        WrappedTask job = new WrappedTask(task, deferred);
 
-        this.buildQueue.add(job);
+        // Spread tasks across the queues of each worker, so that each worker starts with its own share of the work
+        Deque<WrappedTask> queue = this.buildQueues.get(this.nextBuildQueue);
+        this.nextBuildQueue = (this.nextBuildQueue + 1) % this.buildQueues.size();
 
-        synchronized (this.jobNotifier) {
-            this.jobNotifier.notify();
-        }
+        this.queuedTaskCount.incrementAndGet();
+        queue.add(job);
+
+        this.unsignalledTaskCount++;
 
         return job.future;
     }
 
+    /**
+     * Wakes up as many idle worker threads as are needed to process the tasks scheduled since the last call. Workers
+     * which are already running will pick up new tasks on their own, so this only signals threads which are asleep.
+     */
+    public void flush() {
+        int count = this.unsignalledTaskCount;
+        this.unsignalledTaskCount = 0;
+
+        while (count > 0) {
+            WorkerRunnable worker = this.idleWorkers.poll();
+
+            if (worker == null) {
+                break;
+            }
+
+            worker.wake();
+            count--;
+        }
+    }
+
+    /**
+     * Re-evaluates every deferred task which has not been started by a worker yet against the current state of the
+     * world renderer. Tasks which are no longer needed are removed from the queue and cancelled, and tasks which are
+     * less important than the others are moved to the back of their queue. Tasks which the main thread is waiting on
+     * are never touched.
+     *
+     * If a worker picks up a task while it is being cancelled, the build will notice the cancellation and stop early.
+     *
+     * @param shouldCancel Returns true if the task for the given section should be cancelled
+     * @param shouldDemote Returns true if the task for the given section should be moved to the back of the queue
+     * @return The sections whose tasks were cancelled
+     */
+    public List<RenderSection> reprioritizeTasks(Predicate<RenderSection> shouldCancel, Predicate<RenderSection> shouldDemote) {
+        List<RenderSection> cancelled = new ArrayList<>();
+        List<WrappedTask> demoted = new ArrayList<>();
+
+        for (Deque<WrappedTask> queue : this.buildQueues) {
+            for (WrappedTask job : queue) {
+                if (!job.deferred || job.isCancelled()) {
+                    continue;
+                }
+
+                RenderSection section = job.task.getRenderSection();
+
+                if (shouldCancel.test(section)) {
+                    if (queue.removeFirstOccurrence(job)) {
+                        this.queuedTaskCount.decrementAndGet();
+                    }
+
+                    if (job.future.cancel(false)) {
+                        cancelled.add(section);
+                    }
+                } else if (shouldDemote.test(section)) {
+                    demoted.add(job);
+                }
+            }
+
+            // Re-queue demoted tasks after iterating, since the iterator could otherwise visit them again
+            for (WrappedTask job : demoted) {
+                if (queue.removeFirstOccurrence(job)) {
+                    queue.addLast(job);
+                }
+            }
+
+            demoted.clear();
+        }
+
+        return cancelled;
+    }
+
     /**
      * @return True if the build queue is empty
      */
     public boolean isBuildQueueEmpty() {
-        return this.buildQueue.isEmpty();
+        return this.queuedTaskCount.get() <= 0;
     }
 
     /**
@@ -163,6 +302,9 @@ public class ChunkBuilder {
 
         this.world = world;
         this.renderPassManager = renderPassManager;
+        this.blockRenderInfo = new BlockRenderInfoCache(Minecraft.getInstance().getModelManager().getBlockModelShaper());
+        this.meshCache = new ChunkMeshCache(SodiumClientMod.options().advanced.chunkMeshCacheSize * 1024L * 1024L,
+                SodiumClientMod.options().advanced.useChunkMeshDiskCache ? ChunkMeshDiskCache.open(world, this.vertexType) : null);
 
         this.startWorkers();
     }
@@ -185,7 +327,7 @@ public class ChunkBuilder {
     }
 
     public CompletableFuture<Void> scheduleDeferred(ChunkRenderBuildTask task) {
-        return this.schedule(task)
+        return this.schedule(task, true)
                 .thenAccept(this.deferredResultQueue::add);
     }
 
@@ -193,6 +335,13 @@ public class ChunkBuilder {
         return new QueueDrainingIterator<>(this.deferredResultQueue);
     }
 
+    /**
+     * @return The section of a build which failed since this was last called, or null if there are no more
+     */
+    public RenderSection pollFailedBuild() {
+        return this.failedBuilds.poll();
+    }
+
     /**
      * "Steals" a task on the queue and allows the currently calling thread to execute it using locally-allocated
      * resources instead. While this function returns true, the caller should continually execute it so that additional
@@ -201,7 +350,7 @@ public class ChunkBuilder {
      * @return True if it was able to steal a task, otherwise false
      */
     public boolean stealTask() {
-        WrappedTask task = this.getNextJob(false);
+        WrappedTask task = this.pollJob(-1);
 
         if (task == null) {
             return false;
@@ -210,11 +359,11 @@ public class ChunkBuilder {
         ChunkBuildContext context = this.localContexts.get();
 
         if (context == null) {
-            this.localContexts.set(context = new ChunkBuildContext(this.world, this.vertexType, this.renderPassManager));
+            this.localContexts.set(context = new ChunkBuildContext(this.world, this.vertexType, this.renderPassManager, this.blockRenderInfo, this.meshCache));
         }
 
         try {
-            processJob(task, context);
+            this.processJob(task, context);
         } finally {
             context.release();
         }
@@ -223,26 +372,46 @@ public class ChunkBuilder {
     }
 
     /**
-     * Returns the next task which this worker can work on or blocks until one becomes available. If no tasks are
-     * currently available and {@param block} is true, it will wait on the {@link ChunkBuilder#jobNotifier} field
-     * until it is notified of an incoming task.
+     * Takes the next task from the queue of the given worker, or steals one from the queue of another worker if it is
+     * empty. Victims are visited starting from a random queue, so that stealing workers don't all contend on the same
+     * one. A negative worker index can be used by threads which do not own a queue.
+     *
+     * @return The task to work on, or null if every queue is empty
      */
-    private WrappedTask getNextJob(boolean block) {
-        WrappedTask job = ChunkBuilder.this.buildQueue.poll();
+    private WrappedTask pollJob(int worker) {
+        List<Deque<WrappedTask>> queues = this.buildQueues;
+        int count = queues.size();
 
-        if (job == null && block) {
-            synchronized (ChunkBuilder.this.jobNotifier) {
-                try {
-                    ChunkBuilder.this.jobNotifier.wait();
-                } catch (InterruptedException ignored) {
+        if (count == 0) {
+            return null;
+        }
+
+        WrappedTask job = null;
+
+        if (worker >= 0) {
+            job = queues.get(worker).poll();
+        }
+
+        if (job == null) {
+            int start = ThreadLocalRandom.current().nextInt(count);
+
+            for (int i = 0; i < count && job == null; i++) {
+                int victim = (start + i) % count;
+
+                if (victim != worker) {
+                    job = queues.get(victim).poll();
                 }
             }
         }
 
+        if (job != null) {
+            this.queuedTaskCount.decrementAndGet();
+        }
+
         return job;
     }
 
-    private static void processJob(WrappedTask job, ChunkBuildContext context) {
+    private void processJob(WrappedTask job, ChunkBuildContext context) {
         if (job.isCancelled()) {
             return;
         }
@@ -250,12 +419,18 @@ public class ChunkBuilder {
         ChunkBuildResult result;
 
         try {
-            // Perform the build task with this worker's local resources and obtain the result
-            result = job.task.performBuild(context, job);
+            // Perform the build task with this worker's local resources and obtain the result. Partial results are only
+            // useful for deferred tasks, since the main thread waits for the other tasks to finish before uploading them
+            result = job.task.performBuild(context, job, job.deferred ? this.deferredResultQueue::add : null);
         } catch (Exception e) {
+            LOGGER.warn("Couldn't build chunk section {}", job.task.getRenderSection(), e);
+
+            // The section's pending update was cleared when this task was submitted, so it has to be scheduled again or
+            // it would never be rebuilt
+            this.failedBuilds.add(job.task.getRenderSection());
+
             // Propagate any exception from chunk building
             job.future.completeExceptionally(e);
-            e.printStackTrace();
             return;
         }
 
@@ -263,6 +438,8 @@ public class ChunkBuilder {
         if (result != null) {
             // Notify the future that the result is now available
             job.future.complete(result);
+
+            this.completedTasks.incrementAndGet();
         } else if (!job.isCancelled()) {
             // If the job wasn't cancelled and no result was produced, we've hit a bug
             job.future.completeExceptionally(new RuntimeException("No result was produced by the task"));
@@ -271,27 +448,49 @@ public class ChunkBuilder {
 
     private class WorkerRunnable implements Runnable {
         private final AtomicBoolean running = ChunkBuilder.this.running;
+        private final AtomicBoolean idle = new AtomicBoolean(false);
 
         // Making this thread-local provides a small boost to performance by avoiding the overhead in synchronizing
         // caches between different CPU cores
         private final ChunkBuildContext context;
+        private final int index;
 
-        public WorkerRunnable(ChunkBuildContext context) {
+        private Thread thread;
+
+        public WorkerRunnable(ChunkBuildContext context, int index) {
             this.context = context;
+            this.index = index;
+        }
+
+        private void wake() {
+            this.idle.set(false);
+
+            LockSupport.unpark(this.thread);
         }
 
         @Override
         public void run() {
             // Run until the chunk builder shuts down
             while (this.running.get()) {
-                WrappedTask job = ChunkBuilder.this.getNextJob(true);
+                WrappedTask job = ChunkBuilder.this.pollJob(this.index);
 
                 if (job == null) {
-                    continue;
+                    // Mark this worker as idle before checking the queues one last time, so that a task which is
+                    // scheduled in between will either be found here or cause this worker to be woken up
+                    if (this.idle.compareAndSet(false, true)) {
+                        ChunkBuilder.this.idleWorkers.add(this);
+                    }
+
+                    job = ChunkBuilder.this.pollJob(this.index);
+
+                    if (job == null) {
+                        LockSupport.park(this);
+                        continue;
+                    }
                 }
 
                 try {
-                    processJob(job, this.context);
+                    ChunkBuilder.this.processJob(job, this.context);
                 } finally {
                     this.context.release();
                 }
@@ -302,10 +501,12 @@ public class ChunkBuilder {
     private static class WrappedTask implements CancellationSource {
         private final ChunkRenderBuildTask task;
         private final CompletableFuture<ChunkBuildResult> future;
+        private final boolean deferred;
 
-        private WrappedTask(ChunkRenderBuildTask task) {
+        private WrappedTask(ChunkRenderBuildTask task, boolean deferred) {
             this.task = task;
             this.future = new CompletableFuture<>();
+            this.deferred = deferred;
         }
 
         @Override
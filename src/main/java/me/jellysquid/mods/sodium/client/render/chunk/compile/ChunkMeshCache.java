@@ -0,0 +1,275 @@
+package me.jellysquid.mods.sodium.client.render.chunk.compile;
+
+import it.unimi.dsi.fastutil.longs.Long2ReferenceLinkedOpenHashMap;
+import me.jellysquid.mods.sodium.client.gl.buffer.IndexedVertexData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import net.minecraft.client.renderer.chunk.VisibilitySet;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a copy of the meshes of recently built chunk sections in system memory, so that a section which is unloaded and
+ * later loaded again with the same contents can skip meshing entirely. This is common when the player moves back and
+ * forth across the edge of the render distance.
+ *
+ * Entries are keyed by the position of the section and a hash of the cloned world data which it was built from (see
+ * {@link me.jellysquid.mods.sodium.client.world.cloned.ChunkRenderContext#getContentHash()}). Only the most recent
+ * mesh of each section is kept, and once the meshes exceed the cache's memory limit, the least recently used entries are
+ * discarded. The cache can be used by any number of worker threads at once.
+ *
+ * If a {@link ChunkMeshDiskCache} is given, every mesh is also written to disk, and sections which aren't cached in
+ * memory are read back from there.
+ */
+public class ChunkMeshCache {
+    // A rough size of each entry besides its meshes, so that sections without any geometry are still accounted for
+    private static final long ENTRY_OVERHEAD = 256L;
+
+    private final long maxMemoryUsage;
+    private final ChunkMeshDiskCache diskCache;
+
+    // Entries ordered from least to most recently used
+    private final Long2ReferenceLinkedOpenHashMap<Entry> entries = new Long2ReferenceLinkedOpenHashMap<>();
+
+    private long memoryUsage;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxMemoryUsage The number of bytes which cached meshes can use before they are evicted, or zero to only use
+     *                       the disk cache
+     * @param diskCache The cache to fall back to for sections which aren't in memory, or null if there is none
+     */
+    public ChunkMeshCache(long maxMemoryUsage, ChunkMeshDiskCache diskCache) {
+        this.maxMemoryUsage = maxMemoryUsage;
+        this.diskCache = diskCache;
+    }
+
+    public boolean isEnabled() {
+        return this.maxMemoryUsage > 0 || this.diskCache != null;
+    }
+
+    /**
+     * Finds the meshes which were previously built for the section with the given position and contents. Sections
+     * which aren't in memory are looked up in the disk cache, if there is one.
+     *
+     * @return A copy of the cached entry which the caller owns, or null if no entry matches
+     */
+    public Entry get(long pos, long contentHash) {
+        Entry cached;
+
+        synchronized (this) {
+            cached = this.entries.getAndMoveToLast(pos);
+
+            if (cached != null && cached.contentHash == contentHash) {
+                // Pin the entry so that its meshes aren't freed if it is evicted by another thread while being copied
+                cached.pins++;
+            } else {
+                cached = null;
+            }
+        }
+
+        if (cached != null) {
+            this.hits.incrementAndGet();
+
+            try {
+                return cached.copy();
+            } finally {
+                synchronized (this) {
+                    cached.pins--;
+
+                    if (cached.evicted && cached.pins == 0) {
+                        cached.delete();
+                    }
+                }
+            }
+        }
+
+        if (this.diskCache != null) {
+            Entry entry = this.diskCache.read(pos, contentHash);
+
+            if (entry != null) {
+                this.diskHits.incrementAndGet();
+
+                return entry;
+            }
+        }
+
+        this.misses.incrementAndGet();
+
+        return null;
+    }
+
+    /**
+     * Adds the meshes which were just built for a section to the cache, replacing any previous entry for the section.
+     * The cache takes ownership of the given meshes, so they must not be used by the caller afterwards.
+     */
+    public void put(long pos, long contentHash, Map<BlockRenderPass, ChunkMeshData> meshes, VisibilitySet occlusionData,
+                    ChunkRenderBounds bounds, List<TextureAtlasSprite> animatedSprites) {
+        if (this.diskCache != null) {
+            this.diskCache.write(pos, contentHash, meshes, occlusionData, bounds, animatedSprites);
+        }
+
+        Entry entry = new Entry(contentHash, meshes, occlusionData, bounds, animatedSprites, getMeshSize(meshes));
+
+        if (entry.size > this.maxMemoryUsage) {
+            entry.delete();
+
+            return;
+        }
+
+        synchronized (this) {
+            Entry prev = this.entries.put(pos, entry);
+
+            if (prev != null) {
+                this.memoryUsage -= prev.size;
+                this.release(prev);
+            }
+
+            this.memoryUsage += entry.size;
+
+            while (this.memoryUsage > this.maxMemoryUsage) {
+                Entry evicted = this.entries.removeFirst();
+
+                this.memoryUsage -= evicted.size;
+                this.release(evicted);
+            }
+        }
+    }
+
+    /**
+     * Discards all cached meshes and frees their memory.
+     */
+    public synchronized void clear() {
+        for (Entry entry : this.entries.values()) {
+            this.release(entry);
+        }
+
+        this.entries.clear();
+        this.memoryUsage = 0;
+
+        if (this.diskCache != null) {
+            this.diskCache.close();
+        }
+    }
+
+    /**
+     * Frees the meshes of an entry which has been removed from the cache, or defers it until the entry is no longer
+     * being copied. Must be called while holding the lock.
+     */
+    private void release(Entry entry) {
+        entry.evicted = true;
+
+        if (entry.pins == 0) {
+            entry.delete();
+        }
+    }
+
+    public synchronized long getMemoryUsage() {
+        return this.memoryUsage;
+    }
+
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    public long getDiskHitCount() {
+        return this.diskHits.get();
+    }
+
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    public boolean hasDiskCache() {
+        return this.diskCache != null;
+    }
+
+    private static long getMeshSize(Map<BlockRenderPass, ChunkMeshData> meshes) {
+        long size = ENTRY_OVERHEAD;
+
+        for (ChunkMeshData mesh : meshes.values()) {
+            size += mesh.getVertexData().vertexBuffer().getLength();
+            size += mesh.getVertexData().indexBuffer().getLength();
+        }
+
+        return size;
+    }
+
+    private static Map<BlockRenderPass, ChunkMeshData> copyMeshes(Map<BlockRenderPass, ChunkMeshData> meshes) {
+        Map<BlockRenderPass, ChunkMeshData> copy = new EnumMap<>(BlockRenderPass.class);
+
+        for (Map.Entry<BlockRenderPass, ChunkMeshData> entry : meshes.entrySet()) {
+            ChunkMeshData mesh = entry.getValue();
+            IndexedVertexData vertexData = mesh.getVertexData();
+
+            copy.put(entry.getKey(), new ChunkMeshData(new IndexedVertexData(vertexData.vertexFormat(),
+                    NativeBuffer.copy(vertexData.vertexBuffer().getDirectBuffer()),
+                    NativeBuffer.copy(vertexData.indexBuffer().getDirectBuffer())), mesh.getParts()));
+        }
+
+        return copy;
+    }
+
+    public static class Entry {
+        private final long contentHash;
+
+        private final Map<BlockRenderPass, ChunkMeshData> meshes;
+        private final VisibilitySet occlusionData;
+        private final ChunkRenderBounds bounds;
+        private final List<TextureAtlasSprite> animatedSprites;
+
+        private final long size;
+
+        // The number of threads copying the entry, and whether it has been removed from the cache, which are both
+        // guarded by the cache's lock
+        private int pins;
+        private boolean evicted;
+
+        Entry(long contentHash, Map<BlockRenderPass, ChunkMeshData> meshes, VisibilitySet occlusionData,
+                      ChunkRenderBounds bounds, List<TextureAtlasSprite> animatedSprites, long size) {
+            this.contentHash = contentHash;
+            this.meshes = meshes;
+            this.occlusionData = occlusionData;
+            this.bounds = bounds;
+            this.animatedSprites = animatedSprites;
+            this.size = size;
+        }
+
+        private Entry copy() {
+            return new Entry(this.contentHash, copyMeshes(this.meshes), this.occlusionData, this.bounds,
+                    this.animatedSprites, this.size);
+        }
+
+        private void delete() {
+            for (ChunkMeshData mesh : this.meshes.values()) {
+                mesh.getVertexData()
+                        .delete();
+            }
+        }
+
+        public Map<BlockRenderPass, ChunkMeshData> getMeshes() {
+            return this.meshes;
+        }
+
+        public VisibilitySet getOcclusionData() {
+            return this.occlusionData;
+        }
+
+        public ChunkRenderBounds getBounds() {
+            return this.bounds;
+        }
+
+        public List<TextureAtlasSprite> getAnimatedSprites() {
+            return this.animatedSprites;
+        }
+    }
+}
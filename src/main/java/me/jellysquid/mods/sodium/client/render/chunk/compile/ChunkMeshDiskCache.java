@@ -0,0 +1,591 @@
+package me.jellysquid.mods.sodium.client.render.chunk.compile;
+
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
+import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexFormat;
+import me.jellysquid.mods.sodium.client.gl.buffer.IndexedVertexData;
+import me.jellysquid.mods.sodium.client.gl.tessellation.GlIndexType;
+import me.jellysquid.mods.sodium.client.gl.util.ElementRange;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import me.jellysquid.mods.sodium.common.util.DirectionUtil;
+import me.jellysquid.mods.sodium.mixin.core.resource.AbstractPackResourcesAccessor;
+import me.jellysquid.mods.sodium.mixin.core.texture.TextureAtlasAccessor;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.client.multiplayer.ServerData;
+import net.minecraft.client.renderer.chunk.VisibilitySet;
+import net.minecraft.client.renderer.texture.TextureAtlas;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.client.server.IntegratedServer;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.AbstractPackResources;
+import net.minecraft.server.packs.PackResources;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraftforge.fml.ModList;
+import net.minecraftforge.forgespi.language.IModInfo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Stores the meshes of built chunk sections on disk, so that they can be re-used after re-joining a world or switching
+ * dimensions. Each section is stored in its own file, which is read back into memory in full rather than being mapped,
+ * since a mapping keeps the file open until it is collected and would prevent it from being replaced.
+ *
+ * Entries are stored in a directory for each world and dimension, and are keyed by the position of the section and the
+ * hash of its contents, which identifies blocks by their registry names. Since meshes also depend on the loaded resource
+ * packs, the layout of the block atlas, mods and graphics settings, the directory of each world is further split by a
+ * fingerprint of those, and directories for any other fingerprint are deleted when the cache is opened.
+ *
+ * Files are written by a single background thread. If it can't keep up, entries are simply not written.
+ */
+public class ChunkMeshDiskCache {
+    private static final Logger LOGGER = LogManager.getLogger("ChunkMeshDiskCache");
+
+    private static final int MAGIC = 0x534d4348; // "SMCH"
+    private static final int VERSION = 2;
+
+    /**
+     * The maximum number of bytes which the cache of a single world can use. Once exceeded, the oldest files are
+     * deleted the next time the world is joined.
+     */
+    private static final long MAX_DISK_USAGE = 1024L * 1024L * 1024L;
+
+    /**
+     * The maximum number of entries which can be waiting to be written.
+     */
+    private static final int MAX_PENDING_WRITES = 256;
+
+    private static final VisibilitySet EMPTY_VISIBILITY = new VisibilitySet();
+
+    private final Path directory;
+
+    private final GlVertexFormat<?> vertexFormat;
+    private final int vertexStride;
+
+    // The sprites which entries can refer to, keyed by the name of their atlas and then their own name. This is taken
+    // on the main thread when the cache is opened, as the atlases can't be safely accessed by the worker threads while
+    // resources are being reloaded.
+    private final Map<ResourceLocation, Map<ResourceLocation, TextureAtlasSprite>> sprites;
+
+    private final ThreadPoolExecutor writer;
+
+    private ChunkMeshDiskCache(Path directory, ChunkVertexType vertexType,
+                               Map<ResourceLocation, Map<ResourceLocation, TextureAtlasSprite>> sprites) {
+        this.directory = directory;
+        this.sprites = sprites;
+        this.vertexFormat = vertexType.getCustomVertexFormat();
+        this.vertexStride = vertexType.getBufferVertexFormat().getStride();
+
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(MAX_PENDING_WRITES), runnable -> {
+                    Thread thread = new Thread(runnable, "Chunk Mesh Cache Writer");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Opens the disk cache for the given world. This must be called on the main thread after resources have been
+     * loaded, and the cache must be re-opened whenever they are reloaded.
+     *
+     * @return The disk cache, or null if it couldn't be opened
+     */
+    public static ChunkMeshDiskCache open(ClientLevel world, ChunkVertexType vertexType) {
+        Path worldDirectory = Minecraft.getInstance().gameDirectory.toPath()
+                .resolve("wisteria")
+                .resolve("mesh-cache")
+                .resolve(getWorldName());
+
+        Map<ResourceLocation, Map<ResourceLocation, TextureAtlasSprite>> sprites = createSpriteSnapshot();
+        String fingerprint = createFingerprint(vertexType, sprites);
+
+        ResourceLocation dimension = world.dimension().location();
+
+        Path directory = worldDirectory.resolve(fingerprint)
+                .resolve(sanitize(dimension.getNamespace() + "_" + dimension.getPath()));
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't create chunk mesh cache directory {}", directory, e);
+            return null;
+        }
+
+        ChunkMeshDiskCache cache = new ChunkMeshDiskCache(directory, vertexType, sprites);
+        cache.writer.execute(() -> cleanup(worldDirectory, fingerprint));
+
+        return cache;
+    }
+
+    /**
+     * Reads the entry for the section at the given position, if its contents match the given hash.
+     *
+     * @return The entry, or null if there is no matching entry
+     */
+    public ChunkMeshCache.Entry read(long pos, long contentHash) {
+        Path path = this.getPath(pos);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+
+            buffer.flip();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            return this.decode(buffer, contentHash);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Couldn't read chunk mesh cache entry {}", path, e);
+
+            this.deleteQuietly(path);
+        }
+
+        return null;
+    }
+
+    /**
+     * Queues the given meshes to be written to disk. The meshes are copied before this method returns, so the caller
+     * keeps ownership of them.
+     */
+    public void write(long pos, long contentHash, Map<BlockRenderPass, ChunkMeshData> meshes, VisibilitySet occlusionData,
+                      ChunkRenderBounds bounds, List<TextureAtlasSprite> animatedSprites) {
+        if (this.writer.getQueue().remainingCapacity() == 0) {
+            return;
+        }
+
+        ByteBuffer data = this.encode(contentHash, meshes, occlusionData, bounds, animatedSprites);
+        Path path = this.getPath(pos);
+
+        this.writer.execute(() -> this.writeFile(path, data));
+    }
+
+    /**
+     * Stops the background writer after any queued entries have been written.
+     */
+    public void close() {
+        this.writer.shutdown();
+    }
+
+    private void writeFile(Path path, ByteBuffer data) {
+        try {
+            Files.createDirectories(path.getParent());
+
+            // Write to a temporary file first, so that a partially written entry can never be read
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't write chunk mesh cache entry {}", path, e);
+        }
+    }
+
+    private ByteBuffer encode(long contentHash, Map<BlockRenderPass, ChunkMeshData> meshes, VisibilitySet occlusionData,
+                              ChunkRenderBounds bounds, List<TextureAtlasSprite> animatedSprites) {
+        List<byte[]> spriteNames = new ArrayList<>();
+
+        for (TextureAtlasSprite sprite : animatedSprites) {
+            spriteNames.add(sprite.atlas().location().toString().getBytes(StandardCharsets.UTF_8));
+            spriteNames.add(sprite.getName().toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        int size = 4 + 4 + 8 + 4 + (6 * 4) + 8 + 4 + 4;
+
+        for (byte[] name : spriteNames) {
+            size += 2 + name.length;
+        }
+
+        for (ChunkMeshData mesh : meshes.values()) {
+            size += 1 + 4 + 4 + 1 + (mesh.getParts().size() * (1 + 4 + 4 + 1 + 4));
+            size += mesh.getVertexData().vertexBuffer().getLength();
+            size += mesh.getVertexData().indexBuffer().getLength();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(contentHash);
+        buffer.putInt(this.vertexStride);
+
+        buffer.putFloat(bounds.x1);
+        buffer.putFloat(bounds.y1);
+        buffer.putFloat(bounds.z1);
+        buffer.putFloat(bounds.x2);
+        buffer.putFloat(bounds.y2);
+        buffer.putFloat(bounds.z2);
+
+        buffer.putLong(encodeVisibility(occlusionData));
+
+        buffer.putInt(animatedSprites.size());
+
+        for (byte[] name : spriteNames) {
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+
+        buffer.putInt(meshes.size());
+
+        for (Map.Entry<BlockRenderPass, ChunkMeshData> entry : meshes.entrySet()) {
+            ChunkMeshData mesh = entry.getValue();
+            IndexedVertexData vertexData = mesh.getVertexData();
+
+            buffer.put((byte) entry.getKey().ordinal());
+            buffer.putInt(vertexData.vertexBuffer().getLength());
+            buffer.putInt(vertexData.indexBuffer().getLength());
+
+            buffer.put((byte) mesh.getParts().size());
+
+            for (Map.Entry<ModelQuadFacing, ElementRange> part : mesh.getParts().entrySet()) {
+                ElementRange range = part.getValue();
+
+                buffer.put((byte) part.getKey().ordinal());
+                buffer.putInt(range.elementPointer());
+                buffer.putInt(range.elementCount());
+                buffer.put((byte) range.indexType().ordinal());
+                buffer.putInt(range.baseVertex());
+            }
+
+            buffer.put(vertexData.vertexBuffer().getDirectBuffer());
+            buffer.put(vertexData.indexBuffer().getDirectBuffer());
+        }
+
+        return buffer.flip();
+    }
+
+    private ChunkMeshCache.Entry decode(ByteBuffer buffer, long contentHash) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalStateException("Not a chunk mesh cache entry");
+        }
+
+        // The section has changed since the entry was written
+        if (buffer.getLong() != contentHash) {
+            return null;
+        }
+
+        if (buffer.getInt() != this.vertexStride) {
+            throw new IllegalStateException("Mis-matched vertex format");
+        }
+
+        ChunkRenderBounds bounds = new ChunkRenderBounds(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(),
+                buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+
+        VisibilitySet occlusionData = decodeVisibility(buffer.getLong());
+
+        int spriteCount = buffer.getInt();
+        List<TextureAtlasSprite> animatedSprites = new ArrayList<>(spriteCount);
+
+        for (int i = 0; i < spriteCount; i++) {
+            ResourceLocation atlas = new ResourceLocation(readString(buffer));
+            ResourceLocation name = new ResourceLocation(readString(buffer));
+
+            Map<ResourceLocation, TextureAtlasSprite> atlasSprites = this.sprites.get(atlas);
+            TextureAtlasSprite sprite = atlasSprites != null ? atlasSprites.get(name) : null;
+
+            if (sprite == null) {
+                throw new IllegalStateException("Unknown sprite " + name + " in atlas " + atlas);
+            }
+
+            animatedSprites.add(sprite);
+        }
+
+        int meshCount = buffer.getInt();
+        Map<BlockRenderPass, ChunkMeshData> meshes = new EnumMap<>(BlockRenderPass.class);
+
+        long size = 0;
+
+        try {
+            for (int i = 0; i < meshCount; i++) {
+                BlockRenderPass pass = BlockRenderPass.VALUES[buffer.get()];
+
+                int vertexBytes = buffer.getInt();
+                int indexBytes = buffer.getInt();
+
+                int partCount = buffer.get();
+                Map<ModelQuadFacing, ElementRange> parts = new EnumMap<>(ModelQuadFacing.class);
+
+                for (int j = 0; j < partCount; j++) {
+                    ModelQuadFacing facing = ModelQuadFacing.VALUES[buffer.get()];
+
+                    parts.put(facing, new ElementRange(buffer.getInt(), buffer.getInt(),
+                            GlIndexType.VALUES[buffer.get()], buffer.getInt()));
+                }
+
+                NativeBuffer vertexBuffer = NativeBuffer.copy(buffer.slice(buffer.position(), vertexBytes));
+                buffer.position(buffer.position() + vertexBytes);
+
+                NativeBuffer indexBuffer = NativeBuffer.copy(buffer.slice(buffer.position(), indexBytes));
+                buffer.position(buffer.position() + indexBytes);
+
+                meshes.put(pass, new ChunkMeshData(new IndexedVertexData(this.vertexFormat, vertexBuffer, indexBuffer), parts));
+
+                size += vertexBytes + indexBytes;
+            }
+        } catch (RuntimeException e) {
+            for (ChunkMeshData mesh : meshes.values()) {
+                mesh.getVertexData()
+                        .delete();
+            }
+
+            throw e;
+        }
+
+        return new ChunkMeshCache.Entry(contentHash, meshes, occlusionData, bounds, animatedSprites, size);
+    }
+
+    /**
+     * Copies the sprites of the block atlas, which is the only atlas that chunk meshes use sprites from.
+     */
+    private static Map<ResourceLocation, Map<ResourceLocation, TextureAtlasSprite>> createSpriteSnapshot() {
+        TextureAtlas atlas = Minecraft.getInstance().getModelManager().getAtlas(TextureAtlas.LOCATION_BLOCKS);
+
+        return Map.of(TextureAtlas.LOCATION_BLOCKS, Map.copyOf(((TextureAtlasAccessor) atlas).getTexturesByName()));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long encodeVisibility(VisibilitySet data) {
+        long bits = 0L;
+
+        for (Direction from : DirectionUtil.ALL_DIRECTIONS) {
+            for (Direction to : DirectionUtil.ALL_DIRECTIONS) {
+                if (data.visibilityBetween(from, to)) {
+                    bits |= 1L << ((from.ordinal() * DirectionUtil.ALL_DIRECTIONS.length) + to.ordinal());
+                }
+            }
+        }
+
+        return bits;
+    }
+
+    private static VisibilitySet decodeVisibility(long bits) {
+        if (bits == 0L) {
+            return EMPTY_VISIBILITY;
+        }
+
+        VisibilitySet data = new VisibilitySet();
+
+        for (Direction from : DirectionUtil.ALL_DIRECTIONS) {
+            for (Direction to : DirectionUtil.ALL_DIRECTIONS) {
+                if ((bits & (1L << ((from.ordinal() * DirectionUtil.ALL_DIRECTIONS.length) + to.ordinal()))) != 0) {
+                    data.set(from, to, true);
+                }
+            }
+        }
+
+        return data;
+    }
+
+    private Path getPath(long pos) {
+        int x = SectionPos.x(pos);
+        int y = SectionPos.y(pos);
+        int z = SectionPos.z(pos);
+
+        // Group the files of nearby sections into directories, so that no single directory gets too large
+        return this.directory.resolve((x >> 5) + "." + (z >> 5))
+                .resolve(x + "." + y + "." + z + ".bin");
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Deletes the entries which were written with any other fingerprint, and the oldest entries of the current
+     * fingerprint if the world's cache is too large.
+     */
+    private static void cleanup(Path worldDirectory, String fingerprint) {
+        try (Stream<Path> children = Files.list(worldDirectory)) {
+            for (Path child : (Iterable<Path>) children::iterator) {
+                if (!child.getFileName().toString().equals(fingerprint)) {
+                    deleteRecursively(child);
+                }
+            }
+
+            List<Path> files = new ArrayList<>();
+            Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+
+            long totalSize = 0;
+
+            try (Stream<Path> stream = Files.walk(worldDirectory.resolve(fingerprint))) {
+                for (Path path : (Iterable<Path>) stream::iterator) {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+
+                    if (attrs.isRegularFile()) {
+                        files.add(path);
+                        attributes.put(path, attrs);
+
+                        totalSize += attrs.size();
+                    }
+                }
+            }
+
+            if (totalSize <= MAX_DISK_USAGE) {
+                return;
+            }
+
+            files.sort(Comparator.comparing(path -> attributes.get(path).lastModifiedTime()));
+
+            // Delete down to a bit under the limit, so that this doesn't need to happen every time the world is joined
+            for (Path path : files) {
+                if (totalSize <= MAX_DISK_USAGE * 3 / 4) {
+                    break;
+                }
+
+                Files.deleteIfExists(path);
+                totalSize -= attributes.get(path).size();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't clean up chunk mesh cache directory {}", worldDirectory, e);
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> stream = Files.walk(root)) {
+            List<Path> paths = stream.sorted(Comparator.reverseOrder())
+                    .toList();
+
+            for (Path path : paths) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Creates a fingerprint of everything besides the world itself which the meshes depend on.
+     */
+    /**
+     * Creates a fingerprint of everything other than the contents of a section which its mesh depends on. As the cache
+     * outlives the session, this includes the layout of the block atlas and the files of every resource pack, so that
+     * changing the contents of a pack without changing its name still invalidates the cache.
+     */
+    private static String createFingerprint(ChunkVertexType vertexType, Map<ResourceLocation, Map<ResourceLocation, TextureAtlasSprite>> sprites) {
+        Minecraft client = Minecraft.getInstance();
+
+        List<String> parts = new ArrayList<>();
+        parts.add(Integer.toString(VERSION));
+        parts.add(vertexType.getClass().getName());
+        parts.add(Integer.toString(vertexType.getBufferVertexFormat().getStride()));
+        parts.add(Boolean.toString(SodiumClientMod.options().advanced.useSharedQuadIndices));
+
+        parts.addAll(client.getResourcePackRepository().getSelectedIds());
+
+        client.getResourceManager().listPacks().forEach(pack -> parts.add(describePack(pack)));
+
+        for (IModInfo mod : ModList.get().getMods()) {
+            parts.add(mod.getModId() + "@" + mod.getVersion());
+        }
+
+        parts.add(client.options.ambientOcclusion.name());
+        parts.add(client.options.graphicsMode.name());
+        parts.add(Integer.toString(client.options.biomeBlendRadius));
+        parts.add(Integer.toString(client.options.mipmapLevels));
+        parts.add(SodiumClientMod.options().quality.leavesQuality.name());
+
+        // The texture coordinates of every sprite are baked into the meshes
+        for (Map.Entry<ResourceLocation, Map<ResourceLocation, TextureAtlasSprite>> atlas : sprites.entrySet()) {
+            List<ResourceLocation> names = new ArrayList<>(atlas.getValue().keySet());
+            names.sort(Comparator.naturalOrder());
+
+            for (ResourceLocation name : names) {
+                TextureAtlasSprite sprite = atlas.getValue().get(name);
+
+                parts.add(atlas.getKey() + "/" + name + "@" + sprite.getU0() + "," + sprite.getV0() + "," +
+                        sprite.getU1() + "," + sprite.getV1());
+            }
+        }
+
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 is not available", e);
+        }
+
+        for (String part : parts) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String describePack(PackResources pack) {
+        if (pack instanceof AbstractPackResources) {
+            File file = ((AbstractPackResourcesAccessor) pack).getFile();
+
+            return pack.getName() + "@" + file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+        }
+
+        return pack.getName();
+    }
+
+    private static String getWorldName() {
+        Minecraft client = Minecraft.getInstance();
+        IntegratedServer server = client.getSingleplayerServer();
+
+        if (server != null) {
+            Path path = server.getWorldPath(LevelResource.ROOT).normalize();
+
+            return sanitize("singleplayer_" + path.getFileName());
+        }
+
+        ServerData serverData = client.getCurrentServer();
+
+        if (serverData != null) {
+            return sanitize("server_" + serverData.ip);
+        }
+
+        return "unknown";
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
+}
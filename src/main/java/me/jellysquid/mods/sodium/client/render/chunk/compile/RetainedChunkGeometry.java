@@ -0,0 +1,253 @@
+package me.jellysquid.mods.sodium.client.render.chunk.compile;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+import me.jellysquid.mods.sodium.client.model.IndexBufferBuilder;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.ChunkModelBuilder;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A copy of the geometry of a chunk section which is kept on the CPU after it has been built, along with the range of
+ * vertices and indices which each block produced. When only a few blocks in the section change, the next build can
+ * re-mesh just the blocks around those changes and copy the geometry of every other block from here.
+ *
+ * Blocks are always meshed in the order of their local index, so the geometry of each block is contiguous and the
+ * blocks are stored in ascending order.
+ */
+public class RetainedChunkGeometry {
+    private static final int FACING_COUNT = ModelQuadFacing.COUNT;
+
+    private final PassGeometry[] passes;
+    private final int vertexStride;
+
+    private RetainedChunkGeometry(PassGeometry[] passes, int vertexStride) {
+        this.passes = passes;
+        this.vertexStride = vertexStride;
+    }
+
+    /**
+     * Creates a reader for copying the geometry of blocks out of this object. Blocks must be copied in ascending order.
+     */
+    public Reader createReader() {
+        return new Reader();
+    }
+
+    /**
+     * @return The approximate number of bytes of memory used by this object
+     */
+    public long getSize() {
+        long size = 0;
+
+        for (PassGeometry pass : this.passes) {
+            if (pass != null) {
+                size += pass.getSize();
+            }
+        }
+
+        return size;
+    }
+
+    public class Reader {
+        // The position of the next block to be read for each pass
+        private final int[] cursors = new int[RetainedChunkGeometry.this.passes.length];
+
+        /**
+         * Copies the geometry of the block with the given local index into the given buffers. Blocks must be copied in
+         * ascending order for each kind of pass, but the opaque and translucent passes can be copied separately.
+         *
+         * @param translucent Whether to copy the geometry of the translucent passes instead of the opaque ones
+         * @return True if the block had any geometry in those passes, otherwise false
+         */
+        public boolean copyBlock(int blockIndex, ChunkBuildBuffers buffers, boolean translucent) {
+            boolean copied = false;
+
+            for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+                PassGeometry geometry = RetainedChunkGeometry.this.passes[pass.ordinal()];
+
+                if (geometry == null || pass.isTranslucent() != translucent) {
+                    continue;
+                }
+
+                int cursor = this.cursors[pass.ordinal()];
+
+                while (cursor < geometry.blocks.length && geometry.blocks[cursor] < blockIndex) {
+                    cursor++;
+                }
+
+                this.cursors[pass.ordinal()] = cursor;
+
+                if (cursor < geometry.blocks.length && geometry.blocks[cursor] == blockIndex) {
+                    geometry.copy(cursor, buffers.get(pass), RetainedChunkGeometry.this.vertexStride);
+                    copied = true;
+                }
+            }
+
+            return copied;
+        }
+    }
+
+    private static class PassGeometry {
+        private final ByteBuffer vertexData;
+        private final int[][] indexData;
+
+        // The local index of each block with geometry in this pass, and the start of its vertices and indices
+        private final short[] blocks;
+        private final int[] vertexStarts;
+        private final int[][] indexStarts;
+
+        private PassGeometry(ByteBuffer vertexData, int[][] indexData, short[] blocks, int[] vertexStarts, int[][] indexStarts) {
+            this.vertexData = vertexData;
+            this.indexData = indexData;
+            this.blocks = blocks;
+            this.vertexStarts = vertexStarts;
+            this.indexStarts = indexStarts;
+        }
+
+        private void copy(int entry, ChunkModelBuilder builder, int vertexStride) {
+            ModelVertexSink vertices = builder.getVertexSink();
+
+            int vertexStart = this.vertexStarts[entry];
+            int vertexCount = this.vertexStarts[entry + 1] - vertexStart;
+
+            // Indices refer to vertices by their position in the whole buffer, so they need to be moved along with them
+            int offset = vertices.getVertexCount() - vertexStart;
+
+            vertices.copyVertices(this.vertexData, vertexStart * vertexStride, vertexCount);
+
+            for (ModelQuadFacing facing : ModelQuadFacing.VALUES) {
+                int[] starts = this.indexStarts[facing.ordinal()];
+                int from = starts[entry];
+                int to = starts[entry + 1];
+
+                if (from != to) {
+                    builder.getIndexBufferBuilder(facing)
+                            .add(this.indexData[facing.ordinal()], from, to, offset);
+                }
+            }
+        }
+
+        private long getSize() {
+            long size = this.vertexData.capacity();
+
+            for (int[] indices : this.indexData) {
+                size += indices.length * 4L;
+            }
+
+            size += this.blocks.length * (2L + (4L * (1 + FACING_COUNT)));
+
+            return size;
+        }
+    }
+
+    /**
+     * Records the range of geometry produced by each block while a chunk section is being meshed.
+     */
+    public static class Recorder {
+        private final ChunkBuildBuffers buffers;
+
+        private final ShortArrayList[] blocks = new ShortArrayList[BlockRenderPass.COUNT];
+        private final IntArrayList[] vertexStarts = new IntArrayList[BlockRenderPass.COUNT];
+        private final IntArrayList[][] indexStarts = new IntArrayList[BlockRenderPass.COUNT][FACING_COUNT];
+
+        // The vertex and index counts of each pass at the start of the current block
+        private final int[] vertexCounts = new int[BlockRenderPass.COUNT];
+        private final int[][] indexCounts = new int[BlockRenderPass.COUNT][FACING_COUNT];
+
+        public Recorder(ChunkBuildBuffers buffers) {
+            this.buffers = buffers;
+
+            for (int pass = 0; pass < BlockRenderPass.COUNT; pass++) {
+                this.blocks[pass] = new ShortArrayList();
+                this.vertexStarts[pass] = new IntArrayList();
+
+                for (int facing = 0; facing < FACING_COUNT; facing++) {
+                    this.indexStarts[pass][facing] = new IntArrayList();
+                }
+            }
+        }
+
+        /**
+         * Must be called before any geometry for a block is written.
+         */
+        public void beginBlock() {
+            for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+                ChunkModelBuilder builder = this.buffers.get(pass);
+
+                this.vertexCounts[pass.ordinal()] = builder.getVertexSink().getVertexCount();
+
+                for (ModelQuadFacing facing : ModelQuadFacing.VALUES) {
+                    this.indexCounts[pass.ordinal()][facing.ordinal()] = builder.getIndexBufferBuilder(facing).getCount();
+                }
+            }
+        }
+
+        /**
+         * Must be called after all geometry for a block has been written.
+         */
+        public void endBlock(int blockIndex) {
+            for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+                ChunkModelBuilder builder = this.buffers.get(pass);
+
+                int vertexCount = builder.getVertexSink().getVertexCount();
+                boolean changed = vertexCount != this.vertexCounts[pass.ordinal()];
+
+                for (ModelQuadFacing facing : ModelQuadFacing.VALUES) {
+                    changed |= builder.getIndexBufferBuilder(facing).getCount() != this.indexCounts[pass.ordinal()][facing.ordinal()];
+                }
+
+                if (changed) {
+                    this.blocks[pass.ordinal()].add((short) blockIndex);
+                    this.vertexStarts[pass.ordinal()].add(this.vertexCounts[pass.ordinal()]);
+
+                    for (int facing = 0; facing < FACING_COUNT; facing++) {
+                        this.indexStarts[pass.ordinal()][facing].add(this.indexCounts[pass.ordinal()][facing]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Copies the geometry which has been written so far. This must be called before the meshes are taken from
+         * the build buffers.
+         */
+        public RetainedChunkGeometry build() {
+            PassGeometry[] passes = new PassGeometry[BlockRenderPass.COUNT];
+
+            for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+                ShortArrayList blocks = this.blocks[pass.ordinal()];
+
+                if (blocks.isEmpty()) {
+                    continue;
+                }
+
+                ChunkModelBuilder builder = this.buffers.get(pass);
+
+                // Close off the range of the last block
+                IntArrayList vertexStarts = this.vertexStarts[pass.ordinal()];
+                vertexStarts.add(builder.getVertexSink().getVertexCount());
+
+                int[][] indexData = new int[FACING_COUNT][];
+                int[][] indexStarts = new int[FACING_COUNT][];
+
+                for (ModelQuadFacing facing : ModelQuadFacing.VALUES) {
+                    IndexBufferBuilder indices = builder.getIndexBufferBuilder(facing);
+
+                    IntArrayList starts = this.indexStarts[pass.ordinal()][facing.ordinal()];
+                    starts.add(indices.getCount());
+
+                    indexData[facing.ordinal()] = this.buffers.copyIndexData(pass, facing);
+                    indexStarts[facing.ordinal()] = starts.toIntArray();
+                }
+
+                passes[pass.ordinal()] = new PassGeometry(this.buffers.copyVertexData(pass), indexData,
+                        blocks.toShortArray(), vertexStarts.toIntArray(), indexStarts);
+            }
+
+            return new RetainedChunkGeometry(passes, this.buffers.getVertexStride());
+        }
+    }
+}
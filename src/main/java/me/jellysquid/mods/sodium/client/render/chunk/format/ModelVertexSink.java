@@ -3,6 +3,8 @@ package me.jellysquid.mods.sodium.client.render.chunk.format;
 import me.jellysquid.mods.sodium.client.model.vertex.VertexSink;
 import net.minecraft.core.Vec3i;
 
+import java.nio.ByteBuffer;
+
 public interface ModelVertexSink extends VertexSink {
     /**
      * Writes a quad vertex to this sink.
@@ -21,4 +23,12 @@ public interface ModelVertexSink extends VertexSink {
         this.writeVertex(offset.getX() + posX, offset.getY() + posY, offset.getZ() + posZ, color, u, v, light, chunkId);
     }
 
+    /**
+     * Copies vertices which were previously written by a sink of the same format into this sink.
+     * @param src The buffer containing the encoded vertices
+     * @param offset The byte offset of the first vertex in the buffer
+     * @param count The number of vertices to copy
+     */
+    void copyVertices(ByteBuffer src, int offset, int count);
+
 }
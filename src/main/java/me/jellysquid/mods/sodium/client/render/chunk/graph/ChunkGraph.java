@@ -0,0 +1,235 @@
+package me.jellysquid.mods.sodium.client.render.chunk.graph;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
+import me.jellysquid.mods.sodium.client.util.frustum.Frustum;
+import me.jellysquid.mods.sodium.common.util.DirectionUtil;
+import net.minecraft.client.renderer.chunk.VisibilitySet;
+import net.minecraft.core.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Stores the state of every node in the chunk visibility graph. Rather than keeping an object for each node, the state
+ * is kept in flat arrays indexed by a dense node ID, which keeps the graph search from chasing pointers across the heap
+ * and avoids allocating several small objects for every section. Node IDs are re-used after a node is removed.
+ */
+public class ChunkGraph {
+    public static final int NULL_ID = -1;
+
+    private static final int DIRECTION_COUNT = DirectionUtil.ALL_DIRECTIONS.length;
+    private static final long DEFAULT_VISIBILITY_DATA = calculateVisibilityData(ChunkRenderData.EMPTY.getOcclusionData());
+
+    private RenderSection[] sections;
+
+    private int[] chunkX, chunkY, chunkZ;
+    private int[] lastVisibleFrame;
+    private long[] visibilityData;
+    private byte[] cullingState;
+
+    private int[] adjacent;
+
+    private final IntArrayList freeIds = new IntArrayList();
+    private int nextId;
+
+    public ChunkGraph() {
+        this(4096);
+    }
+
+    public ChunkGraph(int capacity) {
+        this.sections = new RenderSection[capacity];
+
+        this.chunkX = new int[capacity];
+        this.chunkY = new int[capacity];
+        this.chunkZ = new int[capacity];
+        this.lastVisibleFrame = new int[capacity];
+        this.visibilityData = new long[capacity];
+        this.cullingState = new byte[capacity];
+
+        this.adjacent = new int[capacity * DIRECTION_COUNT];
+    }
+
+    /**
+     * Allocates a new node for the chunk section at the given coordinates. The node is not connected to any other
+     * nodes until {@link ChunkGraph#connect(int, Direction, int)} is called.
+     *
+     * @return The ID of the new node
+     */
+    public int add(int x, int y, int z) {
+        int id;
+
+        if (!this.freeIds.isEmpty()) {
+            id = this.freeIds.popInt();
+        } else {
+            id = this.nextId++;
+
+            if (id >= this.sections.length) {
+                this.resize(this.sections.length * 2);
+            }
+        }
+
+        this.chunkX[id] = x;
+        this.chunkY[id] = y;
+        this.chunkZ[id] = z;
+
+        this.lastVisibleFrame[id] = -1;
+        this.visibilityData[id] = DEFAULT_VISIBILITY_DATA;
+        this.cullingState[id] = 0;
+
+        Arrays.fill(this.adjacent, id * DIRECTION_COUNT, (id + 1) * DIRECTION_COUNT, NULL_ID);
+
+        return id;
+    }
+
+    /**
+     * Disconnects a node from all of its neighbors and releases its ID for re-use.
+     */
+    public void remove(int id) {
+        for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
+            int adj = this.getAdjacent(id, dir);
+
+            if (adj != NULL_ID) {
+                this.adjacent[(adj * DIRECTION_COUNT) + DirectionUtil.getOpposite(dir).ordinal()] = NULL_ID;
+                this.adjacent[(id * DIRECTION_COUNT) + dir.ordinal()] = NULL_ID;
+            }
+        }
+
+        this.sections[id] = null;
+        this.lastVisibleFrame[id] = -1;
+
+        this.freeIds.add(id);
+    }
+
+    private void resize(int capacity) {
+        this.sections = Arrays.copyOf(this.sections, capacity);
+
+        this.chunkX = Arrays.copyOf(this.chunkX, capacity);
+        this.chunkY = Arrays.copyOf(this.chunkY, capacity);
+        this.chunkZ = Arrays.copyOf(this.chunkZ, capacity);
+        this.lastVisibleFrame = Arrays.copyOf(this.lastVisibleFrame, capacity);
+        this.visibilityData = Arrays.copyOf(this.visibilityData, capacity);
+        this.cullingState = Arrays.copyOf(this.cullingState, capacity);
+
+        this.adjacent = Arrays.copyOf(this.adjacent, capacity * DIRECTION_COUNT);
+    }
+
+    public void setSection(int id, RenderSection section) {
+        this.sections[id] = section;
+    }
+
+    public RenderSection getSection(int id) {
+        return this.sections[id];
+    }
+
+    /**
+     * Connects two nodes which neighbor each other, where the second node is the neighbor of the first node in the
+     * given direction.
+     */
+    public void connect(int id, Direction dir, int adj) {
+        this.adjacent[(id * DIRECTION_COUNT) + dir.ordinal()] = adj;
+        this.adjacent[(adj * DIRECTION_COUNT) + DirectionUtil.getOpposite(dir).ordinal()] = id;
+    }
+
+    public int getAdjacent(int id, Direction dir) {
+        return this.adjacent[(id * DIRECTION_COUNT) + dir.ordinal()];
+    }
+
+    public void setLastVisibleFrame(int id, int frame) {
+        this.lastVisibleFrame[id] = frame;
+    }
+
+    public int getLastVisibleFrame(int id) {
+        return this.lastVisibleFrame[id];
+    }
+
+    /**
+     * @return True if the visibility data of the node changed as a result of the update, otherwise false
+     */
+    public boolean setOcclusionData(int id, VisibilitySet occlusionData) {
+        long visibilityData = calculateVisibilityData(occlusionData);
+
+        if (this.visibilityData[id] == visibilityData) {
+            return false;
+        }
+
+        this.visibilityData[id] = visibilityData;
+
+        return true;
+    }
+
+    private static long calculateVisibilityData(VisibilitySet occlusionData) {
+        long visibilityData = 0;
+
+        for (Direction from : DirectionUtil.ALL_DIRECTIONS) {
+            for (Direction to : DirectionUtil.ALL_DIRECTIONS) {
+                if (occlusionData == null || occlusionData.visibilityBetween(from, to)) {
+                    visibilityData |= (1L << ((from.ordinal() << 3) + to.ordinal()));
+                }
+            }
+        }
+
+        return visibilityData;
+    }
+
+    public boolean isVisibleThrough(int id, Direction from, Direction to) {
+        return ((this.visibilityData[id] & (1L << ((from.ordinal() << 3) + to.ordinal()))) != 0L);
+    }
+
+    public void setCullingState(int id, byte parent, Direction dir) {
+        this.cullingState[id] = (byte) (parent | (1 << dir.ordinal()));
+    }
+
+    public boolean canCull(int id, Direction dir) {
+        return (this.cullingState[id] & 1 << dir.ordinal()) != 0;
+    }
+
+    public byte getCullingState(int id) {
+        return this.cullingState[id];
+    }
+
+    public void resetCullingState(int id) {
+        this.cullingState[id] = 0;
+    }
+
+    public boolean isCulledByFrustum(int id, Frustum frustum) {
+        float x = this.getOriginX(id);
+        float y = this.getOriginY(id);
+        float z = this.getOriginZ(id);
+
+        return !frustum.isBoxVisible(x, y, z, x + 16.0f, y + 16.0f, z + 16.0f);
+    }
+
+    public int getChunkX(int id) {
+        return this.chunkX[id];
+    }
+
+    public int getChunkY(int id) {
+        return this.chunkY[id];
+    }
+
+    public int getChunkZ(int id) {
+        return this.chunkZ[id];
+    }
+
+    /**
+     * @return The x-coordinate of the origin position of the node's chunk section
+     */
+    public int getOriginX(int id) {
+        return this.chunkX[id] << 4;
+    }
+
+    /**
+     * @return The y-coordinate of the origin position of the node's chunk section
+     */
+    public int getOriginY(int id) {
+        return this.chunkY[id] << 4;
+    }
+
+    /**
+     * @return The z-coordinate of the origin position of the node's chunk section
+     */
+    public int getOriginZ(int id) {
+        return this.chunkZ[id] << 4;
+    }
+}
@@ -1,13 +1,15 @@
 package me.jellysquid.mods.sodium.client.render.chunk.graph;
 
-import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
+import me.jellysquid.mods.sodium.common.util.DirectionUtil;
 import net.minecraft.core.Direction;
 
 import java.util.Arrays;
 
 public class ChunkGraphIterationQueue {
-    private RenderSection[] renders;
-    private Direction[] directions;
+    private static final byte NO_DIRECTION = -1;
+
+    private int[] nodes;
+    private byte[] directions;
 
     private int pos;
     private int capacity;
@@ -17,36 +19,38 @@ public class ChunkGraphIterationQueue {
     }
 
     public ChunkGraphIterationQueue(int capacity) {
-        this.renders = new RenderSection[capacity];
-        this.directions = new Direction[capacity];
+        this.nodes = new int[capacity];
+        this.directions = new byte[capacity];
 
         this.capacity = capacity;
     }
 
-    public void add(RenderSection render, Direction direction) {
+    public void add(int node, Direction direction) {
         int i = this.pos++;
 
         if (i == this.capacity) {
             this.resize();
         }
 
-        this.renders[i] = render;
-        this.directions[i] = direction;
+        this.nodes[i] = node;
+        this.directions[i] = direction == null ? NO_DIRECTION : (byte) direction.ordinal();
     }
 
     private void resize() {
         this.capacity *= 2;
 
-        this.renders = Arrays.copyOf(this.renders, this.capacity);
+        this.nodes = Arrays.copyOf(this.nodes, this.capacity);
         this.directions = Arrays.copyOf(this.directions, this.capacity);
     }
 
-    public RenderSection getRender(int i) {
-        return this.renders[i];
+    public int getNode(int i) {
+        return this.nodes[i];
     }
 
     public Direction getDirection(int i) {
-        return this.directions[i];
+        byte direction = this.directions[i];
+
+        return direction == NO_DIRECTION ? null : DirectionUtil.ALL_DIRECTIONS[direction];
     }
 
     public void clear() {
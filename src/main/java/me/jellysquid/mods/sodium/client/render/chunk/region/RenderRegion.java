@@ -3,12 +3,17 @@ package me.jellysquid.mods.sodium.client.render.chunk.region;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.gl.arena.AsyncBufferArena;
+import me.jellysquid.mods.sodium.client.gl.arena.DeduplicatingBufferArena;
 import me.jellysquid.mods.sodium.client.gl.arena.GlBufferArena;
 import me.jellysquid.mods.sodium.client.gl.arena.SwapBufferArena;
+import me.jellysquid.mods.sodium.client.gl.arena.TlsfBufferArena;
 import me.jellysquid.mods.sodium.client.gl.arena.staging.StagingBuffer;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 import me.jellysquid.mods.sodium.client.gl.tessellation.GlTessellation;
+import me.jellysquid.mods.sodium.client.gui.SodiumGameOptions;
 import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
+import me.jellysquid.mods.sodium.client.render.chunk.SharedQuadIndexBuffer;
 import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkModelVertexFormats;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 import me.jellysquid.mods.sodium.client.util.MathUtil;
@@ -70,7 +75,7 @@ public class RenderRegion {
 
     public void deleteResources(CommandList commandList) {
         if (this.arenas != null) {
-            this.arenas.delete(commandList);
+            this.manager.deleteRegionArenas(commandList, this.arenas);
             this.arenas = null;
         }
     }
@@ -143,23 +148,57 @@ public class RenderRegion {
 
     public static class RenderRegionArenas {
         public final GlBufferArena vertexBuffers;
+
+        // The index data of each section, or null if every section is drawn with the shared quad index buffer
         public final GlBufferArena indexBuffers;
+        public final SharedQuadIndexBuffer quadIndexBuffer;
 
         public final Map<BlockRenderPass, GlTessellation> tessellations = new EnumMap<>(BlockRenderPass.class);
 
         public RenderRegionArenas(CommandList commandList, StagingBuffer stagingBuffer) {
-            int expectedVertexCount = REGION_SIZE * 756;
+            this(commandList, stagingBuffer, null, 1);
+        }
+
+        /**
+         * @param quadIndexBuffer The index buffer which every section is drawn with, or null if sections have index data
+         *                        of their own
+         * @param regionCount The number of regions which are expected to store their geometry in these arenas. If this is
+         *                    more than one, the arenas are shared and always use the TLSF allocator, growing geometrically
+         */
+        public RenderRegionArenas(CommandList commandList, StagingBuffer stagingBuffer, SharedQuadIndexBuffer quadIndexBuffer, int regionCount) {
+            int expectedVertexCount = REGION_SIZE * 756 * regionCount;
             int expectedIndexCount = (expectedVertexCount / 4) * 6;
 
-            this.vertexBuffers = createArena(commandList, expectedVertexCount * ChunkModelVertexFormats.DEFAULT.getBufferVertexFormat().getStride(), stagingBuffer);
-            this.indexBuffers = createArena(commandList, expectedIndexCount * 4, stagingBuffer);
+            // Shared arenas can grow far larger than those of a single region, so they need an allocator which neither
+            // searches nor moves every segment
+            boolean shared = regionCount > 1;
+
+            this.vertexBuffers = createArena(commandList, expectedVertexCount * ChunkModelVertexFormats.DEFAULT.getBufferVertexFormat().getStride(), stagingBuffer, shared);
+            this.quadIndexBuffer = quadIndexBuffer;
+
+            if (quadIndexBuffer != null) {
+                this.indexBuffers = null;
+                return;
+            }
+
+            GlBufferArena indexBuffers = createArena(commandList, expectedIndexCount * 4, stagingBuffer, shared);
+
+            // Vertices contain the ID of their section, so only index data can be identical between sections
+            if (SodiumClientMod.options().advanced.deduplicateMeshData) {
+                indexBuffers = new DeduplicatingBufferArena(indexBuffers);
+            }
+
+            this.indexBuffers = indexBuffers;
         }
 
         public void delete(CommandList commandList) {
             this.deleteTessellations(commandList);
 
             this.vertexBuffers.delete(commandList);
-            this.indexBuffers.delete(commandList);
+
+            if (this.indexBuffers != null) {
+                this.indexBuffers.delete(commandList);
+            }
         }
 
         public void deleteTessellations(CommandList commandList) {
@@ -178,22 +217,63 @@ public class RenderRegion {
             return this.tessellations.get(pass);
         }
 
+        /**
+         * @return The buffer object which the index data of every section in these arenas is stored in
+         */
+        public GlBuffer getIndexBufferObject() {
+            if (this.quadIndexBuffer != null) {
+                return this.quadIndexBuffer.getBufferObject();
+            }
+
+            return this.indexBuffers.getBufferObject();
+        }
+
         public boolean isEmpty() {
-            return this.vertexBuffers.isEmpty() && this.indexBuffers.isEmpty();
+            return this.vertexBuffers.isEmpty() && (this.indexBuffers == null || this.indexBuffers.isEmpty());
         }
 
         public long getDeviceUsedMemory() {
-            return this.vertexBuffers.getDeviceUsedMemory() + this.indexBuffers.getDeviceUsedMemory();
+            long used = this.vertexBuffers.getDeviceUsedMemory();
+
+            if (this.indexBuffers != null) {
+                used += this.indexBuffers.getDeviceUsedMemory();
+            }
+
+            return used;
         }
 
         public long getDeviceAllocatedMemory() {
-            return this.vertexBuffers.getDeviceAllocatedMemory() + this.indexBuffers.getDeviceAllocatedMemory();
+            long allocated = this.vertexBuffers.getDeviceAllocatedMemory();
+
+            if (this.indexBuffers != null) {
+                allocated += this.indexBuffers.getDeviceAllocatedMemory();
+            }
+
+            return allocated;
+        }
+
+        public long getDeduplicatedMemory() {
+            if (this.indexBuffers instanceof DeduplicatingBufferArena arena) {
+                return arena.getDeduplicatedMemory();
+            }
+
+            return 0L;
+        }
+
+        /**
+         * @param shared True if the arenas are shared between regions
+         * @return The allocator which is used for arenas, which is always TLSF for shared arenas regardless of the
+         * configured allocator
+         */
+        public static SodiumGameOptions.ArenaMemoryAllocator getAllocator(boolean shared) {
+            return shared ? SodiumGameOptions.ArenaMemoryAllocator.TLSF : SodiumClientMod.options().advanced.arenaMemoryAllocator;
         }
 
-        private static GlBufferArena createArena(CommandList commandList, int initialCapacity, StagingBuffer stagingBuffer) {
-            return switch (SodiumClientMod.options().advanced.arenaMemoryAllocator) {
+        private static GlBufferArena createArena(CommandList commandList, int initialCapacity, StagingBuffer stagingBuffer, boolean shared) {
+            return switch (getAllocator(shared)) {
                 case ASYNC -> new AsyncBufferArena(commandList, initialCapacity, stagingBuffer);
                 case SWAP -> new SwapBufferArena(commandList);
+                case TLSF -> new TlsfBufferArena(commandList, initialCapacity, stagingBuffer, shared);
             };
         }
     }
@@ -3,6 +3,7 @@ package me.jellysquid.mods.sodium.client.render.chunk.region;
 import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
+import me.jellysquid.mods.sodium.client.gl.arena.GlBufferSegment;
 import me.jellysquid.mods.sodium.client.gl.arena.PendingUpload;
 import me.jellysquid.mods.sodium.client.gl.arena.staging.FallbackStagingBuffer;
 import me.jellysquid.mods.sodium.client.gl.arena.staging.MappedStagingBuffer;
@@ -10,9 +11,12 @@ import me.jellysquid.mods.sodium.client.gl.arena.staging.StagingBuffer;
 import me.jellysquid.mods.sodium.client.gl.buffer.IndexedVertexData;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
+import me.jellysquid.mods.sodium.client.gl.util.ElementRange;
+import me.jellysquid.mods.sodium.client.gui.SodiumGameOptions;
 import me.jellysquid.mods.sodium.client.util.frustum.Frustum;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
 import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
+import me.jellysquid.mods.sodium.client.render.chunk.SharedQuadIndexBuffer;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
@@ -20,12 +24,31 @@ import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 import java.util.*;
 
 public class RenderRegionManager {
+    // The number of regions which the shared arenas are initially sized for
+    private static final int SHARED_ARENA_REGIONS = 8;
+
     private final Long2ReferenceOpenHashMap<RenderRegion> regions = new Long2ReferenceOpenHashMap<>();
 
     private final StagingBuffer stagingBuffer;
 
+    // The index buffer which every section is drawn with, or null if sections upload index data of their own
+    private final SharedQuadIndexBuffer quadIndexBuffer;
+
+    // The arenas which every region stores its geometry in, or null if each region has arenas of its own
+    private final RenderRegion.RenderRegionArenas sharedArenas;
+
     public RenderRegionManager(CommandList commandList) {
+        this(commandList, false);
+    }
+
+    /**
+     * @param useSharedArenas True if the geometry of every region should be stored in a single set of arenas, so that
+     *                        all regions can be drawn without switching buffers
+     */
+    public RenderRegionManager(CommandList commandList, boolean useSharedArenas) {
         this.stagingBuffer = createStagingBuffer(commandList);
+        this.quadIndexBuffer = SodiumClientMod.options().advanced.useSharedQuadIndices ? new SharedQuadIndexBuffer(commandList) : null;
+        this.sharedArenas = useSharedArenas ? new RenderRegion.RenderRegionArenas(commandList, this.stagingBuffer, this.quadIndexBuffer, SHARED_ARENA_REGIONS) : null;
     }
 
     public void updateVisibility(Frustum frustum) {
@@ -55,6 +78,65 @@ public class RenderRegionManager {
         }
     }
 
+    /**
+     * Compacts the arenas of each region a step at a time, until the given number of bytes have been moved or every
+     * arena has been compacted.
+     *
+     * @return The number of bytes which were moved
+     */
+    public int compact(int maxBytes) {
+        int moved = 0;
+
+        try (CommandList commandList = RenderDevice.INSTANCE.createCommandList()) {
+            for (RenderRegion.RenderRegionArenas arenas : this.getLoadedArenas()) {
+                moved += arenas.vertexBuffers.compact(commandList, maxBytes - moved);
+
+                if (moved >= maxBytes) {
+                    break;
+                }
+
+                if (arenas.indexBuffers == null) {
+                    continue;
+                }
+
+                moved += arenas.indexBuffers.compact(commandList, maxBytes - moved);
+
+                if (moved >= maxBytes) {
+                    break;
+                }
+            }
+        }
+
+        return moved;
+    }
+
+    /**
+     * Gives the arenas of each region a chance to shrink. At most one region is re-allocated per call, as this copies
+     * all of the data in it.
+     *
+     * @return The number of bytes of device memory which were released
+     */
+    public long shrink() {
+        try (CommandList commandList = RenderDevice.INSTANCE.createCommandList()) {
+            for (RenderRegion.RenderRegionArenas arenas : this.getLoadedArenas()) {
+                long reclaimed = arenas.vertexBuffers.shrink(commandList);
+
+                if (arenas.indexBuffers != null) {
+                    reclaimed += arenas.indexBuffers.shrink(commandList);
+                }
+
+                if (reclaimed > 0) {
+                    // The tessellations refer to the old buffer objects
+                    arenas.deleteTessellations(commandList);
+
+                    return reclaimed;
+                }
+            }
+        }
+
+        return 0L;
+    }
+
     public void upload(CommandList commandList, Iterator<ChunkBuildResult> queue) {
         for (Map.Entry<RenderRegion, List<ChunkBuildResult>> entry : this.setupUploadBatches(queue).entrySet()) {
             RenderRegion region = entry.getKey();
@@ -74,7 +156,7 @@ public class RenderRegionManager {
         List<PendingSectionUpload> sectionUploads = new ArrayList<>();
 
         for (ChunkBuildResult result : results) {
-            for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+            for (BlockRenderPass pass : result.passes) {
                 ChunkGraphicsState graphics = result.render.setGraphicsState(pass, null);
 
                 // De-allocate all storage for data we're about to replace
@@ -103,7 +185,17 @@ public class RenderRegionManager {
         RenderRegion.RenderRegionArenas arenas = region.getOrCreateArenas(commandList);
 
         boolean bufferChanged = arenas.vertexBuffers.upload(commandList, sectionUploads.stream().map(i -> i.vertexUpload));
-        bufferChanged |= arenas.indexBuffers.upload(commandList, sectionUploads.stream().map(i -> i.indicesUpload));
+
+        if (arenas.indexBuffers != null) {
+            bufferChanged |= arenas.indexBuffers.upload(commandList, sectionUploads.stream().map(i -> i.indicesUpload));
+        } else {
+            // The meshes don't have any index data, so the shared buffer only needs to be large enough for every part
+            for (PendingSectionUpload upload : sectionUploads) {
+                for (ElementRange part : upload.meshData.getParts().values()) {
+                    this.quadIndexBuffer.ensureCapacity(commandList, part.elementCount());
+                }
+            }
+        }
 
         // If any of the buffers changed, the tessellation will need to be updated
         // Once invalidated the tessellation will be re-created on the next attempted use
@@ -113,7 +205,9 @@ public class RenderRegionManager {
 
         // Collect the upload results
         for (PendingSectionUpload upload : sectionUploads) {
-            upload.section.setGraphicsState(upload.pass, new ChunkGraphicsState(upload.vertexUpload.getResult(), upload.indicesUpload.getResult(), upload.meshData));
+            GlBufferSegment indexSegment = arenas.indexBuffers != null ? upload.indicesUpload.getResult() : null;
+
+            upload.section.setGraphicsState(upload.pass, new ChunkGraphicsState(upload.vertexUpload.getResult(), indexSegment, upload.meshData));
         }
     }
 
@@ -163,6 +257,15 @@ public class RenderRegionManager {
         }
 
         this.regions.clear();
+
+        if (this.sharedArenas != null) {
+            this.sharedArenas.delete(commandList);
+        }
+
+        if (this.quadIndexBuffer != null) {
+            this.quadIndexBuffer.delete(commandList);
+        }
+
         this.stagingBuffer.delete(commandList);
     }
 
@@ -170,12 +273,53 @@ public class RenderRegionManager {
         return this.regions.values();
     }
 
+    /**
+     * @return Every set of arenas which is in use by a loaded region, with shared arenas only being included once
+     */
+    public Collection<RenderRegion.RenderRegionArenas> getLoadedArenas() {
+        if (this.sharedArenas != null) {
+            return List.of(this.sharedArenas);
+        }
+
+        List<RenderRegion.RenderRegionArenas> arenas = new ArrayList<>();
+
+        for (RenderRegion region : this.regions.values()) {
+            if (region.getArenas() != null) {
+                arenas.add(region.getArenas());
+            }
+        }
+
+        return arenas;
+    }
+
+    /**
+     * @return The allocator which is actually used for the arenas of this manager
+     */
+    public SodiumGameOptions.ArenaMemoryAllocator getArenaAllocator() {
+        return RenderRegion.RenderRegionArenas.getAllocator(this.sharedArenas != null);
+    }
+
+    public SharedQuadIndexBuffer getQuadIndexBuffer() {
+        return this.quadIndexBuffer;
+    }
+
     public StagingBuffer getStagingBuffer() {
         return this.stagingBuffer;
     }
 
     protected RenderRegion.RenderRegionArenas createRegionArenas(CommandList commandList) {
-        return new RenderRegion.RenderRegionArenas(commandList, this.stagingBuffer);
+        if (this.sharedArenas != null) {
+            return this.sharedArenas;
+        }
+
+        return new RenderRegion.RenderRegionArenas(commandList, this.stagingBuffer, this.quadIndexBuffer, 1);
+    }
+
+    protected void deleteRegionArenas(CommandList commandList, RenderRegion.RenderRegionArenas arenas) {
+        // Shared arenas are only deleted along with the manager
+        if (arenas != this.sharedArenas) {
+            arenas.delete(commandList);
+        }
     }
 
     private static StagingBuffer createStagingBuffer(CommandList commandList) {
@@ -26,7 +26,9 @@ public class ChunkShaderInterface {
     public ChunkShaderInterface(ShaderBindingContext context, ChunkShaderOptions options) {
         this.uniformModelViewMatrix = context.bindUniform("u_ModelViewMatrix", GlUniformMatrix4f::new);
         this.uniformProjectionMatrix = context.bindUniform("u_ProjectionMatrix", GlUniformMatrix4f::new);
-        this.uniformRegionOffset = context.bindUniform("u_RegionOffset", GlUniformFloat3v::new);
+
+        // The region offset is a vertex attribute when drawing with indirect commands
+        this.uniformRegionOffset = options.multiDrawIndirect() ? null : context.bindUniform("u_RegionOffset", GlUniformFloat3v::new);
 
         this.uniformBlockTex = context.bindUniform("u_BlockTex", GlUniformInt::new);
         this.uniformLightTex = context.bindUniform("u_LightTex", GlUniformInt::new);
@@ -4,7 +4,11 @@ import me.jellysquid.mods.sodium.client.gl.shader.ShaderConstants;
 import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 
-public record ChunkShaderOptions(ChunkFogMode fog, BlockRenderPass pass, ChunkVertexType vertexType) {
+public record ChunkShaderOptions(ChunkFogMode fog, BlockRenderPass pass, ChunkVertexType vertexType, boolean multiDrawIndirect) {
+    public ChunkShaderOptions(ChunkFogMode fog, BlockRenderPass pass, ChunkVertexType vertexType) {
+        this(fog, pass, vertexType, false);
+    }
+
     public ShaderConstants constants() {
         ShaderConstants.Builder constants = ShaderConstants.builder();
         constants.addAll(this.fog.getDefines());
@@ -18,6 +22,10 @@ public record ChunkShaderOptions(ChunkFogMode fog, BlockRenderPass pass, ChunkVe
         constants.add("VERT_POS_OFFSET", String.valueOf(this.vertexType.getPositionOffset()));
         constants.add("VERT_TEX_SCALE", String.valueOf(this.vertexType.getTextureScale()));
 
+        if (this.multiDrawIndirect) {
+            constants.add("USE_MULTIDRAW_INDIRECT");
+        }
+
         return constants.build();
     }
 }
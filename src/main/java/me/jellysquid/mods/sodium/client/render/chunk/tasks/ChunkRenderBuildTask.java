@@ -1,9 +1,12 @@
 package me.jellysquid.mods.sodium.client.render.chunk.tasks;
 
 import me.jellysquid.mods.sodium.client.gl.compile.ChunkBuildContext;
+import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
 import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
 
+import java.util.function.Consumer;
+
 /**
  * Build tasks are immutable jobs (with optional prioritization) which contain all the necessary state to perform
  * chunk mesh updates or quad sorting off the main thread.
@@ -12,7 +15,8 @@ import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
  * without further synchronization. The task will then be scheduled for async execution on a thread pool.
  *
  * After the task completes, it returns a "build result" which contains any computed data that needs to be handled
- * on the main thread.
+ * on the main thread. Tasks may also hand over partial results while they are still running, so that part of their work
+ * can be uploaded sooner.
  */
 public abstract class ChunkRenderBuildTask {
     /**
@@ -21,8 +25,16 @@ public abstract class ChunkRenderBuildTask {
      *
      * @param context The context to use for building this chunk
      * @param cancellationSource The cancellation source which can be used to query if the task is cancelled
+     * @param partialResults The consumer which partial results are passed to before the task completes, or null if
+     *                       only the final result is wanted
      * @return The build result of this task, containing any data which needs to be uploaded on the main-thread, or null
      *         if the task was cancelled.
      */
-    public abstract ChunkBuildResult performBuild(ChunkBuildContext context, CancellationSource cancellationSource);
+    public abstract ChunkBuildResult performBuild(ChunkBuildContext context, CancellationSource cancellationSource,
+                                                  Consumer<ChunkBuildResult> partialResults);
+
+    /**
+     * @return The render section which this task builds
+     */
+    public abstract RenderSection getRenderSection();
 }
@@ -7,6 +7,7 @@ import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
 
 import java.util.Collections;
+import java.util.function.Consumer;
 
 /**
  * A build task which does no computation and always return an empty build result. These tasks are created whenever
@@ -24,7 +25,13 @@ public class ChunkRenderEmptyBuildTask extends ChunkRenderBuildTask {
     }
 
     @Override
-    public ChunkBuildResult performBuild(ChunkBuildContext context, CancellationSource cancellationSource) {
+    public ChunkBuildResult performBuild(ChunkBuildContext context, CancellationSource cancellationSource,
+                                         Consumer<ChunkBuildResult> partialResults) {
         return new ChunkBuildResult(this.render, ChunkRenderData.EMPTY, Collections.emptyMap(), this.frame);
     }
+
+    @Override
+    public RenderSection getRenderSection() {
+        return this.render;
+    }
 }
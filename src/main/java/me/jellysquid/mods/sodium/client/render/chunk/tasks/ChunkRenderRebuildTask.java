@@ -1,59 +1,126 @@
 package me.jellysquid.mods.sodium.client.render.chunk.tasks;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectMaps;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectOpenHashMap;
 import me.jellysquid.mods.sodium.client.compat.FlywheelCompat;
 import me.jellysquid.mods.sodium.client.gl.compile.ChunkBuildContext;
 import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkMeshCache;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.RetainedChunkGeometry;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.render.occlusion.HiddenBlockMask;
+import me.jellysquid.mods.sodium.client.render.pipeline.BlockRenderInfoCache;
+import me.jellysquid.mods.sodium.client.render.pipeline.BlockRenderInfoCache.BlockRenderInfo;
 import me.jellysquid.mods.sodium.client.render.pipeline.context.ChunkRenderCacheLocal;
 import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
 import me.jellysquid.mods.sodium.client.world.WorldSlice;
 import me.jellysquid.mods.sodium.client.world.cloned.ChunkRenderContext;
+import me.jellysquid.mods.sodium.client.world.cloned.ClonedChunkSectionCache;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.ItemBlockRenderTypes;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.blockentity.BlockEntityRenderer;
 import net.minecraft.client.renderer.chunk.VisGraph;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
 import net.minecraft.client.resources.model.BakedModel;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.SectionPos;
 import net.minecraft.world.level.ChunkPos;
-import net.minecraft.world.level.block.RenderShape;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.material.FluidState;
 import net.minecraftforge.client.ForgeHooksClient;
 import net.minecraftforge.client.model.ModelDataManager;
 import net.minecraftforge.client.model.data.EmptyModelData;
 import net.minecraftforge.client.model.data.IModelData;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Rebuilds all the meshes of a chunk for each given render pass with non-occluded blocks. The result is then uploaded
  * to graphics memory on the main thread.
  *
- * This task takes a slice of the world from the thread it is created on. Since these slices require rather large
- * array allocations, they are pooled to ensure that the garbage collector doesn't become overloaded.
+ * The opaque passes are built first, followed by the translucent passes for only the blocks which have any. When the
+ * caller accepts partial results, the opaque passes are handed over as soon as they are done, so that solid terrain
+ * isn't held back by sections with lots of translucent geometry (such as oceans).
+ *
+ * This task takes a slice of the world on the worker thread which executes it, rather than the thread it is created
+ * on. Since these slices require rather large array allocations, they are pooled to ensure that the garbage collector
+ * doesn't become overloaded.
  */
 public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
+    private static final BlockRenderPass[] OPAQUE_PASSES = Arrays.stream(BlockRenderPass.VALUES)
+            .filter(pass -> !pass.isTranslucent())
+            .toArray(BlockRenderPass[]::new);
+
+    private static final BlockRenderPass[] TRANSLUCENT_PASSES = Arrays.stream(BlockRenderPass.VALUES)
+            .filter(BlockRenderPass::isTranslucent)
+            .toArray(BlockRenderPass[]::new);
+
     private final RenderSection render;
-    private final ChunkRenderContext renderContext;
+    private final Level world;
+    private final ClonedChunkSectionCache sectionCache;
     private final int frame;
 
-    public ChunkRenderRebuildTask(RenderSection render, ChunkRenderContext renderContext, int frame) {
+    // The geometry of the previous build and the blocks which have changed since, if only the blocks around those
+    // changes need to be re-meshed
+    private final RetainedChunkGeometry previousGeometry;
+    private final long[] changedBlocks;
+    private final List<TextureAtlasSprite> previousSprites;
+
+    private final boolean retainGeometry;
+
+    public ChunkRenderRebuildTask(RenderSection render, Level world, ClonedChunkSectionCache sectionCache, int frame) {
+        this(render, world, sectionCache, frame, null, null, Collections.emptyList());
+    }
+
+    public ChunkRenderRebuildTask(RenderSection render, Level world, ClonedChunkSectionCache sectionCache, int frame,
+                                  RetainedChunkGeometry previousGeometry, long[] changedBlocks, List<TextureAtlasSprite> previousSprites) {
         this.render = render;
-        this.renderContext = renderContext;
+        this.world = world;
+        this.sectionCache = sectionCache;
         this.frame = frame;
+        this.previousGeometry = previousGeometry;
+        this.changedBlocks = changedBlocks;
+        this.previousSprites = previousSprites;
+        this.retainGeometry = render.retainsGeometry();
     }
 
     @Override
-    public ChunkBuildResult performBuild(ChunkBuildContext buildContext, CancellationSource cancellationSource) {
+    public ChunkBuildResult performBuild(ChunkBuildContext buildContext, CancellationSource cancellationSource,
+                                         Consumer<ChunkBuildResult> partialResults) {
+        if (cancellationSource.isCancelled()) {
+            return null;
+        }
+
+        ChunkRenderContext renderContext = WorldSlice.prepare(this.world, this.render.getChunkPos(), this.sectionCache);
+
+        // The section may have become empty since this task was created
+        if (renderContext == null) {
+            return new ChunkBuildResult(this.render, ChunkRenderData.EMPTY, Collections.emptyMap(), this.frame);
+        }
+
+        try {
+            return this.performBuild(buildContext, cancellationSource, partialResults, renderContext);
+        } finally {
+            renderContext.releaseResources();
+        }
+    }
+
+    private ChunkBuildResult performBuild(ChunkBuildContext buildContext, CancellationSource cancellationSource,
+                                          Consumer<ChunkBuildResult> partialResults, ChunkRenderContext renderContext) {
         ChunkRenderData.Builder renderData = new ChunkRenderData.Builder();
         VisGraph occluder = new VisGraph();
         ChunkRenderBounds.Builder bounds = new ChunkRenderBounds.Builder();
@@ -62,9 +129,10 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
         buffers.init(renderData, this.render.getChunkId());
 
         ChunkRenderCacheLocal cache = buildContext.cache;
-        cache.init(this.renderContext);
+        cache.init(renderContext);
 
         WorldSlice slice = cache.getWorldSlice();
+        BlockRenderInfoCache renderInfo = cache.getBlockRenderInfo();
 
         int minX = this.render.getOriginX();
         int minY = this.render.getOriginY();
@@ -74,12 +142,48 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
         int maxY = minY + 16;
         int maxZ = minZ + 16;
 
-        assert Minecraft.getInstance().level != null;
-        Map<BlockPos, IModelData> modelDataMap = ModelDataManager.getModelData(Minecraft.getInstance().level, new ChunkPos(SectionPos.blockToSectionCoord(minX), SectionPos.blockToSectionCoord(minZ)));
+        Short2ObjectMap<IModelData> modelDataMap = this.getModelData();
+
+        ChunkMeshCache meshCache = buildContext.meshCache;
+        long sectionKey = this.render.getChunkPos().asLong();
+        long contentHash = 0L;
+
+        // Model data can change the model of a block without changing any of the data which the hash is made from
+        boolean useMeshCache = meshCache.isEnabled() && modelDataMap.isEmpty();
+
+        if (useMeshCache) {
+            contentHash = renderContext.getContentHash();
+
+            ChunkMeshCache.Entry cached = meshCache.get(sectionKey, contentHash);
+
+            if (cached != null) {
+                return this.createCachedResult(cached, slice, renderInfo, renderData);
+            }
+        }
+
+        HiddenBlockMask hiddenBlocks = cache.getHiddenBlocks();
+        hiddenBlocks.compute(slice, renderInfo, minX, minY, minZ);
+
+        RetainedChunkGeometry.Recorder recorder = this.retainGeometry ? new RetainedChunkGeometry.Recorder(buffers) : null;
+        RetainedChunkGeometry.Reader previousGeometry = null;
+        BitSet remeshedBlocks = null;
+
+        if (this.previousGeometry != null) {
+            previousGeometry = this.previousGeometry.createReader();
+            remeshedBlocks = this.getRemeshedBlocks(minX, minY, minZ);
+
+            // The sprites of the blocks which are copied from the previous build won't be seen again
+            for (TextureAtlasSprite sprite : this.previousSprites) {
+                renderData.addSprite(sprite);
+            }
+        }
 
         BlockPos.MutableBlockPos blockPos = new BlockPos.MutableBlockPos();
         BlockPos.MutableBlockPos offset = new BlockPos.MutableBlockPos();
 
+        // The blocks which have geometry in the translucent passes, which are built after all the opaque passes
+        IntArrayList translucentBlocks = new IntArrayList();
+
         for (int y = minY; y < maxY; y++) {
             if (cancellationSource.isCancelled()) {
                 return null;
@@ -96,75 +200,171 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
                     blockPos.set(x, y, z);
                     offset.set(x & 15, y & 15, z & 15);
 
+                    BlockRenderInfo info = renderInfo.get(blockState);
+
                     boolean rendered = false;
+                    boolean hidden = hiddenBlocks.isHidden(x & 15, y & 15, z & 15);
 
-                    if (blockState.getRenderShape() == RenderShape.MODEL) {
+                    int blockIndex = WorldSlice.getLocalBlockIndex(x & 15, y & 15, z & 15);
 
-                        for (RenderType chunkBufferLayer : RenderType.chunkBufferLayers()) {
-                            if (!ItemBlockRenderTypes.canRenderInLayer(blockState, chunkBufferLayer)) {
-                                continue;
-                            }
+                    if (recorder != null) {
+                        recorder.beginBlock();
+                    }
 
-                            ForgeHooksClient.setRenderType(chunkBufferLayer);
-                            IModelData modelData = modelDataMap.getOrDefault(blockPos, EmptyModelData.INSTANCE);
+                    if (previousGeometry != null && !remeshedBlocks.get(blockIndex)) {
+                        // Nothing around this block has changed, so its geometry from the previous build is still valid
+                        rendered = previousGeometry.copyBlock(blockIndex, buffers, false);
+                    } else if (!hidden) {
+                        rendered = this.renderBlock(cache, slice, buffers, info, blockState, blockPos, offset,
+                                modelDataMap, blockIndex, false);
+                    }
 
-                            BakedModel model = cache.getBlockModels().getBlockModel(blockState);
+                    if (recorder != null) {
+                        recorder.endBlock(blockIndex);
+                    }
 
-                            long seed = blockState.getSeed(blockPos);
+                    if (!hidden && info.hasTranslucentLayers()) {
+                        translucentBlocks.add(blockIndex);
+                    }
 
-                            if (cache.getBlockRenderer().renderModel(slice, blockState, blockPos, offset, model, buffers.get(chunkBufferLayer), true, seed, modelData)) {
-                                rendered = true;
-                            }
-                        }
+                    if (info.hasBlockEntity() && addBlockEntity(slice, blockPos, renderData)) {
+                        rendered = true;
+                    }
 
+                    if (info.isSolidRender(blockState, slice, blockPos)) {
+                        occluder.setOpaque(blockPos);
                     }
 
-                    FluidState fluidState = blockState.getFluidState();
+                    if (rendered) {
+                        bounds.addBlock(x & 15, y & 15, z & 15);
+                    }
+                }
+            }
+        }
 
-                    if (!fluidState.isEmpty()) {
-                        for (RenderType chunkBufferLayer : RenderType.chunkBufferLayers()) {
-                            if (!ItemBlockRenderTypes.canRenderInLayer(fluidState, chunkBufferLayer)) {
-                                continue;
-                            }
+        renderData.setOcclusionData(occluder.resolve());
 
-                            ForgeHooksClient.setRenderType(chunkBufferLayer);
+        // Nothing is gained by splitting the result if the translucent passes are empty
+        boolean streamed = partialResults != null && !translucentBlocks.isEmpty();
 
-                            if (cache.getFluidRenderer().render(slice, fluidState, blockPos, offset, buffers.get(chunkBufferLayer))) {
-                                rendered = true;
-                            }
+        if (streamed) {
+            renderData.setBounds(bounds.build(this.render.getChunkPos()));
 
-                        }
-                    }
+            partialResults.accept(new ChunkBuildResult(this.render, renderData.build(), this.createMeshes(buffers, false),
+                    this.frame, null, OPAQUE_PASSES, true));
+        }
 
-                    if (blockState.hasBlockEntity()) {
-                        BlockEntity entity = slice.getBlockEntity(blockPos);
+        if (cancellationSource.isCancelled()) {
+            return null;
+        }
 
-                        if (entity != null) {
-                            BlockEntityRenderer<BlockEntity> renderer = Minecraft.getInstance().getBlockEntityRenderDispatcher().getRenderer(entity);
+        for (int i = 0; i < translucentBlocks.size(); i++) {
+            int blockIndex = translucentBlocks.getInt(i);
 
-                            if (renderer != null && FlywheelCompat.addAndFilterBEs(entity)) {
-                                renderData.addBlockEntity(entity, !renderer.shouldRenderOffScreen(entity));
-                                rendered = true;
-                            }
-                        }
-                    }
+            int x = minX + (blockIndex & 15);
+            int y = minY + (blockIndex >> 8);
+            int z = minZ + ((blockIndex >> 4) & 15);
 
-                    if (blockState.isSolidRender(slice, blockPos)) {
-                        occluder.setOpaque(blockPos);
-                    }
+            BlockState blockState = slice.getBlockState(x, y, z);
+            BlockRenderInfo info = renderInfo.get(blockState);
 
-                    if (rendered) {
-                        bounds.addBlock(x & 15, y & 15, z & 15);
-                    }
-                }
+            blockPos.set(x, y, z);
+            offset.set(x & 15, y & 15, z & 15);
+
+            boolean rendered;
+
+            if (recorder != null) {
+                recorder.beginBlock();
+            }
+
+            if (previousGeometry != null && !remeshedBlocks.get(blockIndex)) {
+                rendered = previousGeometry.copyBlock(blockIndex, buffers, true);
+            } else {
+                rendered = this.renderBlock(cache, slice, buffers, info, blockState, blockPos, offset,
+                        modelDataMap, blockIndex, true);
+            }
+
+            if (recorder != null) {
+                recorder.endBlock(blockIndex);
+            }
+
+            if (rendered) {
+                bounds.addBlock(x & 15, y & 15, z & 15);
             }
         }
 
         ForgeHooksClient.setRenderType(null);
 
+        RetainedChunkGeometry retainedGeometry = recorder != null ? recorder.build() : null;
+
+        renderData.setBounds(bounds.build(this.render.getChunkPos()));
+
+        ChunkRenderData data = renderData.build();
+
+        Map<BlockRenderPass, ChunkMeshData> meshes = this.createMeshes(buffers, true);
+
+        if (!streamed) {
+            meshes.putAll(this.createMeshes(buffers, false));
+        }
+
+        if (useMeshCache) {
+            // The cache takes ownership of its meshes, so it's given its own copies of them straight from the buffers
+            Map<BlockRenderPass, ChunkMeshData> cachedMeshes = this.createMeshes(buffers, true);
+            cachedMeshes.putAll(this.createMeshes(buffers, false));
+
+            meshCache.put(sectionKey, contentHash, cachedMeshes, data.getOcclusionData(), data.getBounds(), data.getAnimatedSprites());
+        }
+
+        return new ChunkBuildResult(this.render, data, meshes, this.frame, retainedGeometry,
+                streamed ? TRANSLUCENT_PASSES : BlockRenderPass.VALUES, false);
+    }
+
+    /**
+     * Renders the model and fluid of a block into either its opaque or its translucent layers.
+     *
+     * @return True if the block produced any geometry, otherwise false
+     */
+    private boolean renderBlock(ChunkRenderCacheLocal cache, WorldSlice slice, ChunkBuildBuffers buffers, BlockRenderInfo info,
+                                BlockState blockState, BlockPos blockPos, BlockPos offset,
+                                Short2ObjectMap<IModelData> modelDataMap, int blockIndex, boolean translucent) {
+        boolean rendered = false;
+
+        RenderType[] blockLayers = info.getBlockLayers(translucent);
+
+        if (blockLayers.length > 0) {
+            IModelData modelData = modelDataMap.isEmpty() ? EmptyModelData.INSTANCE :
+                    modelDataMap.getOrDefault((short) blockIndex, EmptyModelData.INSTANCE);
+            BakedModel model = info.getModel();
+
+            long seed = blockState.getSeed(blockPos);
+
+            for (RenderType chunkBufferLayer : blockLayers) {
+                ForgeHooksClient.setRenderType(chunkBufferLayer);
+
+                if (cache.getBlockRenderer().renderModel(slice, blockState, blockPos, offset, model, buffers.get(chunkBufferLayer), true, seed, modelData)) {
+                    rendered = true;
+                }
+            }
+        }
+
+        for (RenderType chunkBufferLayer : info.getFluidLayers(translucent)) {
+            ForgeHooksClient.setRenderType(chunkBufferLayer);
+
+            if (cache.getFluidRenderer().render(slice, info.getFluidState(), blockPos, offset, buffers.get(chunkBufferLayer))) {
+                rendered = true;
+            }
+        }
+
+        return rendered;
+    }
+
+    /**
+     * Takes the meshes of either the opaque or the translucent passes from the build buffers, skipping empty passes.
+     */
+    private Map<BlockRenderPass, ChunkMeshData> createMeshes(ChunkBuildBuffers buffers, boolean translucent) {
         Map<BlockRenderPass, ChunkMeshData> meshes = new EnumMap<>(BlockRenderPass.class);
 
-        for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+        for (BlockRenderPass pass : translucent ? TRANSLUCENT_PASSES : OPAQUE_PASSES) {
             ChunkMeshData mesh = buffers.createMesh(pass);
 
             if (mesh != null) {
@@ -172,9 +372,119 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
             }
         }
 
-        renderData.setOcclusionData(occluder.resolve());
-        renderData.setBounds(bounds.build(this.render.getChunkPos()));
+        return meshes;
+    }
+
+    /**
+     * Creates the result of this task from meshes which were previously built from the same data. Block entities aren't
+     * part of the meshes, so they are still collected from the world.
+     */
+    private ChunkBuildResult createCachedResult(ChunkMeshCache.Entry cached, WorldSlice slice, BlockRenderInfoCache renderInfo,
+                                                ChunkRenderData.Builder renderData) {
+        BlockPos.MutableBlockPos blockPos = new BlockPos.MutableBlockPos();
+
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    blockPos.set(this.render.getOriginX() + x, this.render.getOriginY() + y, this.render.getOriginZ() + z);
+
+                    BlockState blockState = slice.getBlockState(blockPos.getX(), blockPos.getY(), blockPos.getZ());
+
+                    if (!blockState.isAir() && renderInfo.get(blockState).hasBlockEntity()) {
+                        addBlockEntity(slice, blockPos, renderData);
+                    }
+                }
+            }
+        }
+
+        for (TextureAtlasSprite sprite : cached.getAnimatedSprites()) {
+            renderData.addSprite(sprite);
+        }
+
+        renderData.setOcclusionData(cached.getOcclusionData());
+        renderData.setBounds(cached.getBounds());
+
+        return new ChunkBuildResult(this.render, renderData.build(), cached.getMeshes(), this.frame);
+    }
+
+    /**
+     * Adds the block entity at the given position to the render data, if it has a renderer.
+     *
+     * @return True if a block entity was added, otherwise false
+     */
+    private static boolean addBlockEntity(WorldSlice slice, BlockPos pos, ChunkRenderData.Builder renderData) {
+        BlockEntity entity = slice.getBlockEntity(pos);
+
+        if (entity == null) {
+            return false;
+        }
 
-        return new ChunkBuildResult(this.render, renderData.build(), meshes, this.frame);
+        BlockEntityRenderer<BlockEntity> renderer = Minecraft.getInstance().getBlockEntityRenderDispatcher().getRenderer(entity);
+
+        if (renderer != null && FlywheelCompat.addAndFilterBEs(entity)) {
+            renderData.addBlockEntity(entity, !renderer.shouldRenderOffScreen(entity));
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds the blocks of this section which need to be re-meshed after the changed blocks. Besides the changed block
+     * itself, this includes every block around it, since the culled faces, ambient occlusion and fluid heights of a block
+     * depend on all the blocks next to it (including the diagonals).
+     *
+     * @return A set of the local block indices which need to be re-meshed
+     */
+    private BitSet getRemeshedBlocks(int originX, int originY, int originZ) {
+        BitSet blocks = new BitSet(16 * 16 * 16);
+
+        for (long pos : this.changedBlocks) {
+            int x = BlockPos.getX(pos) - originX;
+            int y = BlockPos.getY(pos) - originY;
+            int z = BlockPos.getZ(pos) - originZ;
+
+            for (int offsetY = Math.max(y - 1, 0); offsetY <= Math.min(y + 1, 15); offsetY++) {
+                for (int offsetZ = Math.max(z - 1, 0); offsetZ <= Math.min(z + 1, 15); offsetZ++) {
+                    for (int offsetX = Math.max(x - 1, 0); offsetX <= Math.min(x + 1, 15); offsetX++) {
+                        blocks.set(WorldSlice.getLocalBlockIndex(offsetX, offsetY, offsetZ));
+                    }
+                }
+            }
+        }
+
+        return blocks;
+    }
+
+    /**
+     * Collects the model data of the blocks within this section, keyed by their index within the section. Forge only
+     * provides the model data of a whole chunk as a map keyed by position, which is far too slow to query for every
+     * block, so it is converted once per build instead.
+     */
+    private Short2ObjectMap<IModelData> getModelData() {
+        assert Minecraft.getInstance().level != null;
+        Map<BlockPos, IModelData> chunkModelData = ModelDataManager.getModelData(Minecraft.getInstance().level,
+                new ChunkPos(this.render.getChunkX(), this.render.getChunkZ()));
+
+        if (chunkModelData == null || chunkModelData.isEmpty()) {
+            return Short2ObjectMaps.emptyMap();
+        }
+
+        Short2ObjectMap<IModelData> modelData = new Short2ObjectOpenHashMap<>();
+
+        for (Map.Entry<BlockPos, IModelData> entry : chunkModelData.entrySet()) {
+            BlockPos pos = entry.getKey();
+
+            if (SectionPos.blockToSectionCoord(pos.getY()) == this.render.getChunkY()) {
+                modelData.put((short) WorldSlice.getLocalBlockIndex(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15), entry.getValue());
+            }
+        }
+
+        return modelData;
+    }
+
+    @Override
+    public RenderSection getRenderSection() {
+        return this.render;
     }
 }
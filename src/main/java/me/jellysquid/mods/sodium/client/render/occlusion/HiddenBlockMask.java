@@ -0,0 +1,76 @@
+package me.jellysquid.mods.sodium.client.render.occlusion;
+
+import me.jellysquid.mods.sodium.client.render.pipeline.BlockRenderInfoCache;
+import me.jellysquid.mods.sodium.client.world.WorldSlice;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * Finds the blocks of a chunk section which are enclosed on all six sides by opaque full cubes. Every face of such a
+ * block would be rejected by {@link BlockOcclusionCache#shouldDrawSide} and anything within it can't be seen, so the
+ * block's model and fluid don't need to be rendered at all.
+ *
+ * The opacity of the section and a one block border around it is stored as one row of bits for each row of blocks
+ * along the x-axis. This allows the neighbors of a whole row of blocks to be tested with a handful of bit operations.
+ */
+public class HiddenBlockMask {
+    // The number of blocks on each axis of the tested volume, including the border
+    private static final int LENGTH = 16 + 2;
+
+    // The opaque full cubes of each row, where bit (x + 1) is set for the block at local x-coordinate x
+    private final int[] opaqueRows = new int[LENGTH * LENGTH];
+
+    // The hidden blocks of each row of the section, where bit x is set for the block at local x-coordinate x
+    private final short[] hiddenRows = new short[16 * 16];
+
+    /**
+     * Finds the hidden blocks of the chunk section with the given origin. This must be called before any of the
+     * blocks in the section are tested with {@link HiddenBlockMask#isHidden(int, int, int)}.
+     */
+    public void compute(WorldSlice slice, BlockRenderInfoCache renderInfo, int originX, int originY, int originZ) {
+        for (int y = 0; y < LENGTH; y++) {
+            for (int z = 0; z < LENGTH; z++) {
+                int row = 0;
+
+                for (int x = 0; x < LENGTH; x++) {
+                    BlockState state = slice.getBlockState(originX + x - 1, originY + y - 1, originZ + z - 1);
+
+                    if (!state.isAir() && renderInfo.get(state).isOpaqueFullCube()) {
+                        row |= 1 << x;
+                    }
+                }
+
+                this.opaqueRows[getRowIndex(y, z)] = row;
+            }
+        }
+
+        for (int y = 1; y <= 16; y++) {
+            for (int z = 1; z <= 16; z++) {
+                int row = this.opaqueRows[getRowIndex(y, z)];
+
+                // A block is hidden if the blocks on either side of it in the same row and in the four adjacent rows
+                // are all opaque. Bit (x + 1) of the result corresponds to the block at local x-coordinate x.
+                int hidden = (row << 1) & (row >>> 1) &
+                        this.opaqueRows[getRowIndex(y - 1, z)] &
+                        this.opaqueRows[getRowIndex(y + 1, z)] &
+                        this.opaqueRows[getRowIndex(y, z - 1)] &
+                        this.opaqueRows[getRowIndex(y, z + 1)];
+
+                this.hiddenRows[((y - 1) << 4) | (z - 1)] = (short) (hidden >>> 1);
+            }
+        }
+    }
+
+    /**
+     * @param x The local x-coordinate
+     * @param y The local y-coordinate
+     * @param z The local z-coordinate
+     * @return True if the block is enclosed by opaque full cubes on all sides
+     */
+    public boolean isHidden(int x, int y, int z) {
+        return (this.hiddenRows[(y << 4) | z] & (1 << x)) != 0;
+    }
+
+    private static int getRowIndex(int y, int z) {
+        return (y * LENGTH) + z;
+    }
+}
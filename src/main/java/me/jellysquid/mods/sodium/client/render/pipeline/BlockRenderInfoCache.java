@@ -0,0 +1,235 @@
+package me.jellysquid.mods.sodium.client.render.pipeline;
+
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import net.minecraft.client.renderer.ItemBlockRenderTypes;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.block.BlockModelShaper;
+import net.minecraft.client.resources.model.BakedModel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.EmptyBlockGetter;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.RenderShape;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.FluidState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches everything about a block state which the chunk meshing loop needs to know before rendering it: the render
+ * layers its model and fluid are drawn in, its baked model, and a few flags. This replaces a lookup into several maps
+ * for every render layer of every block with a single lookup per block.
+ *
+ * Entries are computed lazily the first time a block state is encountered, and the cache can be shared by all chunk
+ * build threads. Since render layers and models can change during a resource reload, a new cache must be created
+ * afterwards.
+ */
+public class BlockRenderInfoCache {
+    private static final List<RenderType> LAYERS = RenderType.chunkBufferLayers();
+
+    // The bitmask of layers which are drawn by translucent render passes
+    private static final int TRANSLUCENT_LAYERS = getTranslucentLayerMask();
+
+    private final BlockModelShaper blockModels;
+
+    // The sub-lists of layers for each possible combination of layers, indexed by a bitmask of layers
+    private final RenderType[][] layersByMask;
+
+    // Entries are immutable once published, so a race between two threads will at worst compute an entry twice
+    private final BlockRenderInfo[] entries;
+
+    public BlockRenderInfoCache(BlockModelShaper blockModels) {
+        if (LAYERS.size() > 8) {
+            throw new IllegalStateException("Too many chunk render layers: " + LAYERS.size());
+        }
+
+        this.blockModels = blockModels;
+        this.layersByMask = createLayerTable();
+        this.entries = new BlockRenderInfo[Block.BLOCK_STATE_REGISTRY.size()];
+    }
+
+    private static RenderType[][] createLayerTable() {
+        RenderType[][] table = new RenderType[1 << LAYERS.size()][];
+
+        for (int mask = 0; mask < table.length; mask++) {
+            List<RenderType> layers = new ArrayList<>();
+
+            for (int i = 0; i < LAYERS.size(); i++) {
+                if ((mask & (1 << i)) != 0) {
+                    layers.add(LAYERS.get(i));
+                }
+            }
+
+            table[mask] = layers.toArray(new RenderType[0]);
+        }
+
+        return table;
+    }
+
+    private static int getTranslucentLayerMask() {
+        int mask = 0;
+
+        for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+            int i = LAYERS.indexOf(pass.getLayer());
+
+            if (pass.isTranslucent() && i >= 0) {
+                mask |= 1 << i;
+            }
+        }
+
+        return mask;
+    }
+
+    public BlockRenderInfo get(BlockState state) {
+        int id = Block.getId(state);
+
+        if (id < 0 || id >= this.entries.length) {
+            // The state wasn't registered when this cache was created, so there's nowhere to cache it
+            return this.create(state);
+        }
+
+        BlockRenderInfo info = this.entries[id];
+
+        if (info == null) {
+            this.entries[id] = info = this.create(state);
+        }
+
+        return info;
+    }
+
+    private BlockRenderInfo create(BlockState state) {
+        int blockLayers = 0;
+        BakedModel model = null;
+
+        if (state.getRenderShape() == RenderShape.MODEL) {
+            blockLayers = getBlockLayerMask(state);
+            model = this.blockModels.getBlockModel(state);
+        }
+
+        FluidState fluidState = state.getFluidState();
+        int fluidLayers = fluidState.isEmpty() ? 0 : getFluidLayerMask(fluidState);
+
+        int flags = 0;
+
+        if (state.hasBlockEntity()) {
+            flags |= BlockRenderInfo.HAS_BLOCK_ENTITY;
+        }
+
+        // Only blocks with a static shape cache whether they are a solid cube, otherwise it depends on the position
+        if (state.getBlock().hasDynamicShape()) {
+            flags |= BlockRenderInfo.DYNAMIC_SOLID_RENDER;
+        } else if (state.isSolidRender(EmptyBlockGetter.INSTANCE, BlockPos.ZERO)) {
+            flags |= BlockRenderInfo.SOLID_RENDER;
+        }
+
+        return new BlockRenderInfo(this.splitLayers(blockLayers), this.splitLayers(fluidLayers), model, fluidState, flags);
+    }
+
+    /**
+     * @return The given layers, split into the opaque layers at index 0 and the translucent layers at index 1
+     */
+    private RenderType[][] splitLayers(int mask) {
+        return new RenderType[][] {
+                this.layersByMask[mask & ~TRANSLUCENT_LAYERS],
+                this.layersByMask[mask & TRANSLUCENT_LAYERS]
+        };
+    }
+
+    private static int getBlockLayerMask(BlockState state) {
+        int mask = 0;
+
+        for (int i = 0; i < LAYERS.size(); i++) {
+            if (ItemBlockRenderTypes.canRenderInLayer(state, LAYERS.get(i))) {
+                mask |= 1 << i;
+            }
+        }
+
+        return mask;
+    }
+
+    private static int getFluidLayerMask(FluidState state) {
+        int mask = 0;
+
+        for (int i = 0; i < LAYERS.size(); i++) {
+            if (ItemBlockRenderTypes.canRenderInLayer(state, LAYERS.get(i))) {
+                mask |= 1 << i;
+            }
+        }
+
+        return mask;
+    }
+
+    public static final class BlockRenderInfo {
+        private static final int HAS_BLOCK_ENTITY = 1 << 0;
+        private static final int SOLID_RENDER = 1 << 1;
+        private static final int DYNAMIC_SOLID_RENDER = 1 << 2;
+
+        // The opaque layers at index 0, and the translucent layers at index 1
+        private final RenderType[][] blockLayers;
+        private final RenderType[][] fluidLayers;
+
+        private final BakedModel model;
+        private final FluidState fluidState;
+
+        private final int flags;
+
+        private BlockRenderInfo(RenderType[][] blockLayers, RenderType[][] fluidLayers, BakedModel model, FluidState fluidState, int flags) {
+            this.blockLayers = blockLayers;
+            this.fluidLayers = fluidLayers;
+            this.model = model;
+            this.fluidState = fluidState;
+            this.flags = flags;
+        }
+
+        /**
+         * @param translucent Whether to return the layers of translucent render passes instead of opaque ones
+         * @return The layers which the block's model is rendered in, or an empty array if it has no model
+         */
+        public RenderType[] getBlockLayers(boolean translucent) {
+            return this.blockLayers[translucent ? 1 : 0];
+        }
+
+        /**
+         * @param translucent Whether to return the layers of translucent render passes instead of opaque ones
+         * @return The layers which the block's fluid is rendered in, or an empty array if it has no fluid
+         */
+        public RenderType[] getFluidLayers(boolean translucent) {
+            return this.fluidLayers[translucent ? 1 : 0];
+        }
+
+        /**
+         * @return True if the block's model or fluid is rendered in any translucent layers
+         */
+        public boolean hasTranslucentLayers() {
+            return this.blockLayers[1].length > 0 || this.fluidLayers[1].length > 0;
+        }
+
+        public BakedModel getModel() {
+            return this.model;
+        }
+
+        public FluidState getFluidState() {
+            return this.fluidState;
+        }
+
+        public boolean hasBlockEntity() {
+            return (this.flags & HAS_BLOCK_ENTITY) != 0;
+        }
+
+        /**
+         * @return True if the block is known to be a solid cube regardless of its position
+         */
+        public boolean isOpaqueFullCube() {
+            return (this.flags & SOLID_RENDER) != 0;
+        }
+
+        public boolean isSolidRender(BlockState state, BlockGetter world, BlockPos pos) {
+            if ((this.flags & DYNAMIC_SOLID_RENDER) != 0) {
+                return state.isSolidRender(world, pos);
+            }
+
+            return (this.flags & SOLID_RENDER) != 0;
+        }
+    }
+}
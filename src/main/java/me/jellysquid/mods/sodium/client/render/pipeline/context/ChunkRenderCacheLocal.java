@@ -3,6 +3,8 @@ package me.jellysquid.mods.sodium.client.render.pipeline.context;
 import me.jellysquid.mods.sodium.client.model.light.LightPipelineProvider;
 import me.jellysquid.mods.sodium.client.model.light.cache.ArrayLightDataCache;
 import me.jellysquid.mods.sodium.client.model.quad.blender.ColorBlender;
+import me.jellysquid.mods.sodium.client.render.occlusion.HiddenBlockMask;
+import me.jellysquid.mods.sodium.client.render.pipeline.BlockRenderInfoCache;
 import me.jellysquid.mods.sodium.client.render.pipeline.BlockRenderer;
 import me.jellysquid.mods.sodium.client.render.pipeline.ChunkRenderCache;
 import me.jellysquid.mods.sodium.client.render.pipeline.FluidRenderer;
@@ -19,9 +21,11 @@ public class ChunkRenderCacheLocal extends ChunkRenderCache {
     private final FluidRenderer fluidRenderer;
 
     private final BlockModelShaper blockModels;
+    private final BlockRenderInfoCache blockRenderInfo;
+    private final HiddenBlockMask hiddenBlocks;
     private final WorldSlice worldSlice;
 
-    public ChunkRenderCacheLocal(Minecraft client, Level world) {
+    public ChunkRenderCacheLocal(Minecraft client, Level world, BlockRenderInfoCache blockRenderInfo) {
         this.worldSlice = new WorldSlice(world);
         this.lightDataCache = new ArrayLightDataCache(this.worldSlice);
 
@@ -32,12 +36,22 @@ public class ChunkRenderCacheLocal extends ChunkRenderCache {
         this.fluidRenderer = new FluidRenderer(lightPipelineProvider, colorBlender);
 
         this.blockModels = client.getModelManager().getBlockModelShaper();
+        this.blockRenderInfo = blockRenderInfo;
+        this.hiddenBlocks = new HiddenBlockMask();
     }
 
     public BlockModelShaper getBlockModels() {
         return this.blockModels;
     }
 
+    public BlockRenderInfoCache getBlockRenderInfo() {
+        return this.blockRenderInfo;
+    }
+
+    public HiddenBlockMask getHiddenBlocks() {
+        return this.hiddenBlocks;
+    }
+
     public BlockRenderer getBlockRenderer() {
         return this.blockRenderer;
     }
@@ -97,7 +97,8 @@ public class NativeBuffer {
         int attempts = 0;
 
         while (++attempts <= MAX_ALLOCATION_ATTEMPTS) {
-            address = MemoryUtil.nmemAlloc(bytes);
+            // Allocate at least one byte, as the allocator is allowed to return null for empty allocations
+            address = MemoryUtil.nmemAlloc(Math.max(bytes, 1));
 
             if (address != MemoryUtil.NULL) {
                 break;
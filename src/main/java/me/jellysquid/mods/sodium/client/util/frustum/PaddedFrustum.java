@@ -0,0 +1,54 @@
+package me.jellysquid.mods.sodium.client.util.frustum;
+
+/**
+ * A frustum which grows every tested box by a margin before testing it against another frustum. The margin is made up
+ * of a constant term and a term which scales with the distance of the box from the camera, which allows the results
+ * of a test to remain conservative while the camera moves or rotates by a bounded amount.
+ */
+public class PaddedFrustum implements Frustum {
+    private final Frustum delegate;
+
+    private final float originX, originY, originZ;
+
+    private final float linearPadding;
+    private final float angularPadding;
+
+    /**
+     * @param delegate The frustum which padded boxes will be tested against
+     * @param originX The x-coordinate of the camera
+     * @param originY The y-coordinate of the camera
+     * @param originZ The z-coordinate of the camera
+     * @param linearPadding The number of blocks to grow each box by on every side
+     * @param angularPadding The number of blocks to grow each box by per block of distance from the camera
+     */
+    public PaddedFrustum(Frustum delegate, float originX, float originY, float originZ, float linearPadding, float angularPadding) {
+        this.delegate = delegate;
+
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+
+        this.linearPadding = linearPadding;
+        this.angularPadding = angularPadding;
+    }
+
+    @Override
+    public Visibility testBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        float extentX = maxX - minX;
+        float extentY = maxY - minY;
+        float extentZ = maxZ - minZ;
+
+        float centerX = minX + (extentX * 0.5f) - this.originX;
+        float centerY = minY + (extentY * 0.5f) - this.originY;
+        float centerZ = minZ + (extentZ * 0.5f) - this.originZ;
+
+        // Use the distance to the furthest possible point of the box, as that point moves the most during a rotation
+        float distance = (float) Math.sqrt((centerX * centerX) + (centerY * centerY) + (centerZ * centerZ)) +
+                (0.5f * (float) Math.sqrt((extentX * extentX) + (extentY * extentY) + (extentZ * extentZ)));
+
+        float padding = this.linearPadding + (distance * this.angularPadding);
+
+        return this.delegate.testBox(minX - padding, minY - padding, minZ - padding,
+                maxX + padding, maxY + padding, maxZ + padding);
+    }
+}
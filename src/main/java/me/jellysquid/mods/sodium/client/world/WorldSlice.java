@@ -66,14 +66,25 @@ public class WorldSlice implements BlockAndTintGetter {
     // The array size for the section lookup table.
     private static final int SECTION_TABLE_ARRAY_SIZE = TABLE_LENGTH * TABLE_LENGTH * TABLE_LENGTH;
 
+    // The index of the origin section in the section lookup table.
+    private static final int ORIGIN_SECTION_INDEX = getLocalSectionIndex(NEIGHBOR_CHUNK_RADIUS, NEIGHBOR_CHUNK_RADIUS, NEIGHBOR_CHUNK_RADIUS);
+
     // The world this slice has copied data from
     private final Level world;
 
     // The accessor used for fetching biome data from the slice
     private final BiomeManager biomeAccess;
 
-    // Local Section->BlockState table.
-    private final BlockState[][] blockStatesArrays;
+    // The unpacked block states of the origin section, which are accessed far more often than any other section.
+    private final BlockState[] originBlockStates;
+
+    // Local Section->packed block data tables. Neighboring sections are decoded on access instead of being unpacked,
+    // since only the few blocks along their border with the origin section will ever be read.
+    private final SimpleBitStorage[] blockStorages;
+    private final ClonedPalette<BlockState>[] blockPalettes;
+
+    // Local Section->BlockState table for sections which contain only one kind of block, otherwise null.
+    private final BlockState[] uniformBlockStates;
 
     // Local Section->Biome table.
     private final Holder<Biome>[][] biomeArrays;
@@ -90,14 +101,28 @@ public class WorldSlice implements BlockAndTintGetter {
     // The chunk origin of this slice
     private SectionPos origin;
 
-    public static ChunkRenderContext prepare(Level world, SectionPos origin, ClonedChunkSectionCache sectionCache) {
+    /**
+     * @return True if the chunk section at the given position is absent or only contains air, in which case there
+     * will never be anything in it to render
+     */
+    public static boolean isSectionEmpty(Level world, SectionPos origin) {
         LevelChunk chunk = world.getChunk(origin.getX(), origin.getZ());
         LevelChunkSection section = chunk.getSections()[world.getSectionIndexFromSectionY(origin.getY())];
 
+        return section == null || section.hasOnlyAir();
+    }
+
+    /**
+     * Clones the chunk sections around the given origin so that they can be safely accessed by a chunk build task.
+     * This is safe to call from worker threads, see {@link ClonedChunkSectionCache#acquire(int, int, int)}.
+     *
+     * @return The cloned sections, or null if the chunk section at the origin is empty
+     */
+    public static ChunkRenderContext prepare(Level world, SectionPos origin, ClonedChunkSectionCache sectionCache) {
         // If the chunk section is absent or empty, simply terminate now. There will never be anything in this chunk
         // section to render, so we need to signal that a chunk render task shouldn't created. This saves a considerable
         // amount of time in queueing instant build tasks and greatly accelerates how quickly the world can be loaded.
-        if (section == null || section.hasOnlyAir()) {
+        if (isSectionEmpty(world, origin)) {
             return null;
         }
 
@@ -138,9 +163,11 @@ public class WorldSlice implements BlockAndTintGetter {
         this.biomeAccess = new BiomeManager(this::getStoredBiome, ((BiomeSeedProvider) this.world).getBiomeSeed());
 
         this.sections = new ClonedChunkSection[SECTION_TABLE_ARRAY_SIZE];
-        this.blockStatesArrays = new BlockState[SECTION_TABLE_ARRAY_SIZE][SECTION_BLOCK_COUNT];
+        this.originBlockStates = new BlockState[SECTION_BLOCK_COUNT];
+        this.blockStorages = new SimpleBitStorage[SECTION_TABLE_ARRAY_SIZE];
+        this.blockPalettes = new ClonedPalette[SECTION_TABLE_ARRAY_SIZE];
+        this.uniformBlockStates = new BlockState[SECTION_TABLE_ARRAY_SIZE];
         this.biomeArrays = new Holder[SECTION_TABLE_ARRAY_SIZE][SECTION_BIOME_COUNT];
-
     }
 
     public void copyData(ChunkRenderContext context) {
@@ -155,48 +182,21 @@ public class WorldSlice implements BlockAndTintGetter {
             for (int y = 0; y < SECTION_LENGTH; y++) {
                 for (int z = 0; z < SECTION_LENGTH; z++) {
                     int idx = getLocalSectionIndex(x, y, z);
-                    this.unpackBlockData(this.blockStatesArrays[idx], this.sections[idx], context.getVolume());
+                    this.copyBlockData(idx, this.sections[idx]);
                     this.unpackBiomeData(this.biomeArrays[idx], this.sections[idx]);
                 }
             }
         }
 
+        this.unpackBlockData(this.originBlockStates, this.sections[ORIGIN_SECTION_INDEX]);
+
         this.biomeColors = new BlockColorCache(this, Minecraft.getInstance().options.biomeBlendRadius);
     }
 
-    private void unpackBlockData(BlockState[] states, ClonedChunkSection section, BoundingBox box) {
-        if (this.origin.equals(section.getPosition()))  {
-            this.unpackBlockData(states, section);
-        } else {
-            this.unpackBlockDataSlow(states, section, box);
-        }
-    }
-
-    private void unpackBlockDataSlow(BlockState[] states, ClonedChunkSection section, BoundingBox box) {
-        SimpleBitStorage intArray = section.getBlockData();
-        ClonedPalette<BlockState> palette = section.getBlockPalette();
-
-        SectionPos pos = section.getPosition();
-
-        int minBlockX = Math.max(box.minX(), pos.minBlockX());
-        int maxBlockX = Math.min(box.maxX(), pos.maxBlockX());
-
-        int minBlockY = Math.max(box.minY(), pos.minBlockY());
-        int maxBlockY = Math.min(box.maxY(), pos.maxBlockY());
-
-        int minBlockZ = Math.max(box.minZ(), pos.minBlockZ());
-        int maxBlockZ = Math.min(box.maxZ(), pos.maxBlockZ());
-
-        for (int y = minBlockY; y <= maxBlockY; y++) {
-            for (int z = minBlockZ; z <= maxBlockZ; z++) {
-                for (int x = minBlockX; x <= maxBlockX; x++) {
-                    int blockIdx = getLocalBlockIndex(x & 15, y & 15, z & 15);
-                    int value = intArray.get(blockIdx);
-
-                    states[blockIdx] = palette.get(value);
-                }
-            }
-        }
+    private void copyBlockData(int idx, ClonedChunkSection section) {
+        this.blockStorages[idx] = section.getBlockData();
+        this.blockPalettes[idx] = section.getBlockPalette();
+        this.uniformBlockStates[idx] = section.getUniformBlockState();
     }
 
     private void unpackBlockData(BlockState[] states, ClonedChunkSection section) {
@@ -224,8 +224,20 @@ public class WorldSlice implements BlockAndTintGetter {
         int relY = y - this.baseY;
         int relZ = z - this.baseZ;
 
-        return this.blockStatesArrays[getLocalSectionIndex(relX >> 4, relY >> 4, relZ >> 4)]
-                [getLocalBlockIndex(relX & 15, relY & 15, relZ & 15)];
+        int sectionIdx = getLocalSectionIndex(relX >> 4, relY >> 4, relZ >> 4);
+        int blockIdx = getLocalBlockIndex(relX & 15, relY & 15, relZ & 15);
+
+        if (sectionIdx == ORIGIN_SECTION_INDEX) {
+            return this.originBlockStates[blockIdx];
+        }
+
+        BlockState uniformState = this.uniformBlockStates[sectionIdx];
+
+        if (uniformState != null) {
+            return uniformState;
+        }
+
+        return this.blockPalettes[sectionIdx].get(this.blockStorages[sectionIdx].get(blockIdx));
     }
 
     @Override
@@ -26,6 +26,20 @@ public class ChunkRenderContext {
         return this.volume;
     }
 
+    /**
+     * @return A hash of the data in all the sections of this context, which is equal for two contexts containing the
+     * same data
+     */
+    public long getContentHash() {
+        long hash = this.sections.length;
+
+        for (ClonedChunkSection section : this.sections) {
+            hash = ClonedChunkSection.mixHash(hash, section != null ? section.getContentHash() : 0L);
+        }
+
+        return hash;
+    }
+
     public void releaseResources() {
         for (ClonedChunkSection section : this.sections) {
             if (section != null) {
@@ -1,5 +1,6 @@
 package me.jellysquid.mods.sodium.client.world.cloned;
 
+import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.shorts.Short2ObjectMap;
 import it.unimi.dsi.fastutil.shorts.Short2ObjectOpenHashMap;
 import me.jellysquid.mods.sodium.client.world.cloned.palette.ClonedPalette;
@@ -9,6 +10,7 @@ import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
 import net.minecraft.core.SectionPos;
 import net.minecraft.data.BuiltinRegistries;
+import net.minecraft.util.BitStorage;
 import net.minecraft.util.SimpleBitStorage;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LightLayer;
@@ -19,14 +21,32 @@ import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.*;
 import net.minecraft.world.level.levelgen.structure.BoundingBox;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ClonedChunkSection {
     private static final LightLayer[] LIGHT_TYPES = LightLayer.values();
     private static final LevelChunkSection EMPTY_SECTION = new LevelChunkSection(0, BuiltinRegistries.BIOME);
 
+    // Rough sizes of the object itself along with its maps and arrays, and of each copied block entity entry
+    private static final long BASE_SIZE = 256L;
+    private static final long BLOCK_ENTITY_ENTRY_SIZE = 16L;
+
+    // The number of times the block entities of a chunk will be copied before giving up if they keep being modified
+    private static final int MAX_BLOCK_ENTITY_COPY_ATTEMPTS = 8;
+
+    // Hashes of each block state which are based on their registry names, unlike their numeric IDs which can be remapped
+    // between sessions by registry syncing
+    private static final Map<BlockState, Long> STABLE_STATE_HASHES = new ConcurrentHashMap<>();
+
+    private static final VarHandle LONG_ARRAY_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
     private final AtomicInteger referenceCount = new AtomicInteger(0);
     private final ClonedChunkSectionCache backingCache;
 
@@ -39,9 +59,21 @@ public class ClonedChunkSection {
 
     private SimpleBitStorage blockStateData;
     private ClonedPalette<BlockState> blockStatePalette;
+    private BlockState uniformBlockState;
 
     private PalettedContainer<Holder<Biome>> biomeData;
 
+    // The container which the block data was copied from, and its modification count at the time
+    private PalettedContainer<BlockState> blockStateSource;
+    private int blockStateVersion;
+    private long blockStateHash;
+
+    // A hash of all the data in this section, computed the first time it is needed
+    private volatile long contentHash;
+    private volatile boolean hasContentHash;
+
+    private long estimatedSize;
+
     ClonedChunkSection(ClonedChunkSectionCache backingCache) {
         this.backingCache = backingCache;
         this.blockEntities = new Short2ObjectOpenHashMap<>();
@@ -62,32 +94,85 @@ public class ClonedChunkSection {
             section = EMPTY_SECTION;
         }
 
-        this.reset(pos);
+        PalettedContainer<BlockState> states = section.getStates();
+
+        // The modification count must be read before copying, so that a concurrent change is always seen as newer
+        int version = PalettedContainerAccessor.getModificationCount(states);
+
+        // If this section was previously cloned from the same data and nothing has been written to it since, the copy
+        // of the block data can be kept. Light data is always fetched again since it is only a reference to the light
+        // engine's (copy-on-write) arrays.
+        boolean blockDataChanged = !pos.equals(this.pos) || states != this.blockStateSource || version != this.blockStateVersion;
+
+        this.reset(pos, blockDataChanged);
+
+        if (blockDataChanged) {
+            this.copyBlockData(states);
+
+            this.blockStateSource = states;
+            this.blockStateVersion = version;
+        }
 
-        this.copyBlockData(section);
         this.copyLightData(world);
         this.copyBiomeData(section);
         this.copyBlockEntities(chunk, pos);
+
+        this.estimatedSize = this.calculateEstimatedSize();
     }
 
-    private void reset(SectionPos pos) {
+    /**
+     * Estimates the amount of memory used by the data copied into this section. Light and biome data is shared with
+     * the world rather than copied, so it isn't counted.
+     */
+    private long calculateEstimatedSize() {
+        long size = BASE_SIZE;
+
+        if (this.blockStateData != null) {
+            size += this.blockStateData.getRaw().length * 8L;
+        }
+
+        size += this.blockEntities.size() * BLOCK_ENTITY_ENTRY_SIZE;
+
+        return size;
+    }
+
+    /**
+     * @return The estimated number of bytes used by this section, as of the last time it was initialized
+     */
+    public long getEstimatedSize() {
+        return this.estimatedSize;
+    }
+
+    private void reset(SectionPos pos, boolean clearBlockData) {
         this.pos = pos;
         this.blockEntities.clear();
         this.renderAttachments.clear();
 
-        this.blockStateData = null;
-        this.blockStatePalette = null;
+        if (clearBlockData) {
+            this.blockStateData = null;
+            this.blockStatePalette = null;
+            this.uniformBlockState = null;
+
+            this.blockStateSource = null;
+        }
 
         this.biomeData = null;
+        this.hasContentHash = false;
 
         Arrays.fill(this.lightDataArrays, null);
     }
 
-    private void copyBlockData(LevelChunkSection section) {
-        PalettedContainer.Data<BlockState> container = PalettedContainerAccessor.getData(section.getStates());
+    private void copyBlockData(PalettedContainer<BlockState> states) {
+        PalettedContainer.Data<BlockState> container = PalettedContainerAccessor.getData(states);
 
         this.blockStateData = copyBlockData(container);
         this.blockStatePalette = copyPalette(container);
+
+        if (container.configuration().bits() == 0) {
+            this.uniformBlockState = container.palette().valueFor(0);
+        }
+
+        this.blockStateHash = hashBlockData(container);
     }
 
     private void copyLightData(Level world) {
@@ -115,14 +200,35 @@ public class ClonedChunkSection {
     private void copyBlockEntities(LevelChunk chunk, SectionPos chunkCoord) {
         BoundingBox box = new BoundingBox(chunkCoord.minBlockX(), chunkCoord.minBlockY(), chunkCoord.minBlockZ(), chunkCoord.maxBlockX(), chunkCoord.maxBlockY(), chunkCoord.maxBlockZ());
 
-        // Copy the block entities from the chunk into our cloned section
-        for (Map.Entry<BlockPos, BlockEntity> entry : chunk.getBlockEntities().entrySet()) {
-            BlockPos pos = entry.getKey();
-            BlockEntity entity = entry.getValue();
+        // The block entities of the chunk are kept in a plain hash map which the main thread can modify while it is being
+        // copied here. Reading it concurrently won't reliably throw, and can instead miss or see stale entries, so the
+        // copy is only kept if no modification was in progress or made while it was being taken.
+        for (int attempt = 1; ; attempt++) {
+            int version = LevelChunkAccessor.getBlockEntityModificationCount(chunk);
 
-            if (box.isInside(pos)) {
-                this.blockEntities.put(SectionPos.sectionRelativePos(pos), entity);
+            if ((version & 1) == 0) {
+                RuntimeException exception = null;
+
+                try {
+                    this.collectBlockEntities(chunk, box);
+                } catch (RuntimeException e) {
+                    exception = e;
+                }
+
+                if (version == LevelChunkAccessor.getBlockEntityModificationCount(chunk)) {
+                    if (exception != null) {
+                        throw exception;
+                    }
+
+                    break;
+                }
             }
+
+            if (attempt >= MAX_BLOCK_ENTITY_COPY_ATTEMPTS) {
+                throw new ConcurrentModificationException("Block entities of chunk " + chunkCoord.chunk() + " kept changing while being copied");
+            }
+
+            Thread.onSpinWait();
         }
 
         // Retrieve any render attachments after we have copied all block entities, as this will call into the code of
@@ -136,6 +242,20 @@ public class ClonedChunkSection {
 //        }
     }
 
+    private void collectBlockEntities(LevelChunk chunk, BoundingBox box) {
+        this.blockEntities.clear();
+
+        // Copy the block entities from the chunk into our cloned section
+        for (Map.Entry<BlockPos, BlockEntity> entry : chunk.getBlockEntities().entrySet()) {
+            BlockPos pos = entry.getKey();
+            BlockEntity entity = entry.getValue();
+
+            if (box.isInside(pos)) {
+                this.blockEntities.put(SectionPos.sectionRelativePos(pos), entity);
+            }
+        }
+    }
+
     public Holder<Biome> getBiome(int x, int y, int z) {
         return this.biomeData.get(x, y, z);
     }
@@ -156,10 +276,118 @@ public class ClonedChunkSection {
         return this.blockStatePalette;
     }
 
+    /**
+     * @return The block state of every block in this section if they are all the same, otherwise null
+     */
+    public BlockState getUniformBlockState() {
+        return this.uniformBlockState;
+    }
+
     public SectionPos getPosition() {
         return this.pos;
     }
 
+    /**
+     * @return A hash of the block, light and biome data of this section, which is equal for two clones of the same data
+     */
+    public long getContentHash() {
+        // Two threads may race to compute the hash, but they will always arrive at the same value
+        if (!this.hasContentHash) {
+            this.contentHash = this.computeContentHash();
+            this.hasContentHash = true;
+        }
+
+        return this.contentHash;
+    }
+
+    private long computeContentHash() {
+        long hash = this.blockStateHash;
+
+        for (DataLayer array : this.lightDataArrays) {
+            hash = mixHash(hash, hashLightData(array));
+        }
+
+        if (this.biomeData != null) {
+            for (int y = 0; y < 4; y++) {
+                for (int z = 0; z < 4; z++) {
+                    for (int x = 0; x < 4; x++) {
+                        hash = mixHash(hash, getBiomeHash(this.biomeData.get(x, y, z)));
+                    }
+                }
+            }
+        }
+
+        return hash;
+    }
+
+    private static long getBiomeHash(Holder<Biome> biome) {
+        // The registry key is used rather than the identity of the biome, so that the hash is the same between sessions
+        return biome.unwrapKey()
+                .map(key -> hashString(key.location().toString()))
+                .orElse(0L);
+    }
+
+    private static long hashBlockData(PalettedContainer.Data<BlockState> container) {
+        long hash = container.configuration().bits();
+
+        Palette<BlockState> palette = container.palette();
+        BitStorage storage = container.storage();
+
+        // The global palette stores numeric block state IDs, so every state has to be looked up to hash it by name
+        if (palette instanceof GlobalPalette) {
+            for (int i = 0; i < storage.getSize(); i++) {
+                hash = mixHash(hash, getStableHash(Block.stateById(storage.get(i))));
+            }
+
+            return hash;
+        }
+
+        for (int i = 0; i < palette.getSize(); i++) {
+            hash = mixHash(hash, getStableHash(palette.valueFor(i)));
+        }
+
+        for (long word : storage.getRaw()) {
+            hash = mixHash(hash, word);
+        }
+
+        return hash;
+    }
+
+    private static long getStableHash(BlockState state) {
+        // The string form of a state contains the registry name of its block and the values of its properties
+        return STABLE_STATE_HASHES.computeIfAbsent(state, key -> hashString(key.toString()));
+    }
+
+    private static long hashString(String string) {
+        long hash = string.length();
+
+        for (int i = 0; i < string.length(); i++) {
+            hash = mixHash(hash, string.charAt(i));
+        }
+
+        return hash;
+    }
+
+    private static long hashLightData(DataLayer array) {
+        // Don't call getData() on an empty array, as it would allocate storage for it
+        if (array == null || array.isEmpty()) {
+            return 0L;
+        }
+
+        byte[] data = array.getData();
+        long hash = data.length;
+
+        for (int i = 0; i < data.length; i += Long.BYTES) {
+            hash = mixHash(hash, (long) LONG_ARRAY_VIEW.get(data, i));
+        }
+
+        return hash;
+    }
+
+    static long mixHash(long hash, long value) {
+        return HashCommon.mix(hash ^ value) + 0x9E3779B97F4A7C15L;
+    }
+
     private static ClonedPalette<BlockState> copyPalette(PalettedContainer.Data<BlockState> container) {
         Palette<BlockState> palette = container.palette();
 
@@ -1,63 +1,223 @@
 package me.jellysquid.mods.sodium.client.world.cloned;
 
+import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.longs.Long2ReferenceMap;
 import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
 import net.minecraft.core.SectionPos;
 import net.minecraft.world.level.Level;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
-
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches cloned chunk sections so that the sections shared by neighboring rebuilds only need to be copied once. The
+ * cache can be used by any number of worker threads at once, while the main thread invalidates sections as they are
+ * modified.
+ *
+ * Sections which are not in use by any rebuild are kept in least-recently-used order. Once the estimated memory used
+ * by all sections exceeds the cache's limit, the least recently used sections are re-used for new clones or discarded.
+ *
+ * Since the world can be modified while a section is being cloned, each invalidation bumps a counter for the section's
+ * position. A clone is only added to the cache if no invalidation happened while it was being made, which ensures that
+ * a stale copy can never be handed out to later rebuilds.
+ *
+ * Invalidated clones are not thrown away immediately. When the same section is needed again, its old clone is refreshed
+ * in place, which only copies the block data again if it was actually modified. Most invalidations are caused by light
+ * updates, so this avoids re-copying identical block data for every rebuild they cause.
+ */
 public class ClonedChunkSectionCache {
+    /**
+     * The number of invalidation counters. Positions which hash to the same counter will only cause clones to be
+     * re-made more often than necessary, so this only needs to be large enough to make that rare.
+     */
+    private static final int INVALIDATION_COUNTER_COUNT = 4096;
+
+    /**
+     * The number of times a section will be cloned before giving up if the world keeps changing underneath it.
+     */
+    private static final int MAX_CLONE_ATTEMPTS = 3;
+
     private final Level world;
+    private final long maxMemoryUsage;
 
-    private final ConcurrentLinkedQueue<ClonedChunkSection> inactivePool = new ConcurrentLinkedQueue<>();
+    // Sections which are not in use, ordered from least to most recently used
+    private final ReferenceLinkedOpenHashSet<ClonedChunkSection> inactiveSections = new ReferenceLinkedOpenHashSet<>();
     private final Long2ReferenceMap<ClonedChunkSection> byPosition = new Long2ReferenceOpenHashMap<>();
 
-    public ClonedChunkSectionCache(Level world) {
+    // Clones which have been invalidated, but which can still be refreshed when their section is needed again
+    private final Long2ReferenceMap<ClonedChunkSection> invalidated = new Long2ReferenceOpenHashMap<>();
+
+    private final AtomicIntegerArray invalidationCounters = new AtomicIntegerArray(INVALIDATION_COUNTER_COUNT);
+
+    private long memoryUsage;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param world The world to clone sections from
+     * @param maxMemoryUsage The estimated number of bytes which cloned sections can use before they are evicted
+     */
+    public ClonedChunkSectionCache(Level world, long maxMemoryUsage) {
         this.world = world;
+        this.maxMemoryUsage = maxMemoryUsage;
     }
 
+    /**
+     * Returns a clone of the chunk section at the given position, re-using an existing clone if one is cached. This is
+     * safe to call from any thread.
+     */
     public ClonedChunkSection acquire(int x, int y, int z) {
         long key = SectionPos.asLong(x, y, z);
-        ClonedChunkSection section = this.byPosition.get(key);
 
-        if (section != null) {
-            this.inactivePool.remove(section);
-        } else {
-            section = this.createSection(x, y, z);
+        ClonedChunkSection section;
+        int version;
+
+        synchronized (this) {
+            section = this.byPosition.get(key);
+
+            if (section != null) {
+                this.inactiveSections.remove(section);
+                section.acquireReference();
+
+                this.hits.incrementAndGet();
+
+                return section;
+            }
+
+            section = this.takeInvalidatedSection(key);
+
+            if (section == null) {
+                section = this.takeUnusedSection();
+            }
+
+            section.acquireReference();
+
+            version = this.getInvalidationCount(key);
         }
 
-        section.acquireReference();
+        this.misses.incrementAndGet();
+
+        long previousSize = section.getEstimatedSize();
+
+        // The section isn't reachable from the cache or the inactive list at this point, so it can be filled in without
+        // holding the lock
+        try {
+            this.initSection(section, SectionPos.of(x, y, z));
+        } finally {
+            synchronized (this) {
+                this.memoryUsage += section.getEstimatedSize() - previousSize;
+            }
+        }
+
+        synchronized (this) {
+            if (version == this.getInvalidationCount(key) && !this.byPosition.containsKey(key)) {
+                this.byPosition.put(key, section);
+            }
+        }
 
         return section;
     }
 
-    private ClonedChunkSection createSection(int x, int y, int z) {
-        ClonedChunkSection section;
-
-        if (!this.inactivePool.isEmpty()) {
-            section = this.inactivePool.remove();
+    /**
+     * Returns the invalidated clone of the section at the given position if it isn't in use by any rebuild, otherwise
+     * null.
+     */
+    private ClonedChunkSection takeInvalidatedSection(long key) {
+        ClonedChunkSection section = this.invalidated.remove(key);
 
-            this.byPosition.remove(section.getPosition().asLong());
-        } else {
-            section = this.allocate();
+        if (section == null || !this.inactiveSections.remove(section)) {
+            return null;
         }
 
-        SectionPos pos = SectionPos.of(x, y, z);
-        section.init(this.world, pos);
+        return section;
+    }
 
-        this.byPosition.put(pos.asLong(), section);
+    /**
+     * Returns a section which can be initialized with new data. While the cache is under its memory limit, a new
+     * section will be allocated so that existing clones can stay cached, otherwise the least recently used section is
+     * re-used.
+     */
+    private ClonedChunkSection takeUnusedSection() {
+        if (this.memoryUsage < this.maxMemoryUsage || this.inactiveSections.isEmpty()) {
+            return this.allocate();
+        }
+
+        ClonedChunkSection section = this.inactiveSections.removeFirst();
+        this.removeFromIndex(section);
 
         return section;
     }
 
-    public void invalidate(int x, int y, int z) {
-        this.byPosition.remove(SectionPos.asLong(x, y, z));
+    private void initSection(ClonedChunkSection section, SectionPos pos) {
+        // Reading the world from another thread can fail if it is being modified at the same time. Any such
+        // modification will schedule another rebuild, so it is enough to simply try again. If every attempt fails, the
+        // build fails and the chunk builder schedules the section to be rebuilt again.
+        for (int attempt = 1; ; attempt++) {
+            try {
+                section.init(this.world, pos);
+
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_CLONE_ATTEMPTS) {
+                    this.release(section);
+
+                    throw new RuntimeException("Couldn't clone chunk section at " + pos, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks any cached clone of the section at the given position as out of date. This must be called after the
+     * section is modified.
+     */
+    public synchronized void invalidate(int x, int y, int z) {
+        long key = SectionPos.asLong(x, y, z);
+
+        this.invalidationCounters.incrementAndGet(getCounterIndex(key));
+
+        ClonedChunkSection section = this.byPosition.remove(key);
+
+        if (section != null) {
+            this.invalidated.put(key, section);
+        }
+    }
+
+    private int getInvalidationCount(long key) {
+        return this.invalidationCounters.get(getCounterIndex(key));
+    }
+
+    private static int getCounterIndex(long key) {
+        return (int) HashCommon.mix(key) & (INVALIDATION_COUNTER_COUNT - 1);
     }
 
-    public void release(ClonedChunkSection section) {
+    public synchronized void release(ClonedChunkSection section) {
         if (section.releaseReference()) {
-            this.tryReclaim(section);
+            this.inactiveSections.addAndMoveToLast(section);
+            this.evictUnusedSections();
+        }
+    }
+
+    /**
+     * Discards the least recently used sections which are not in use until the cache is back under its memory limit.
+     */
+    private void evictUnusedSections() {
+        while (this.memoryUsage > this.maxMemoryUsage && !this.inactiveSections.isEmpty()) {
+            ClonedChunkSection section = this.inactiveSections.removeFirst();
+            this.removeFromIndex(section);
+
+            this.memoryUsage -= section.getEstimatedSize();
+        }
+    }
+
+    private void removeFromIndex(ClonedChunkSection section) {
+        SectionPos pos = section.getPosition();
+
+        if (pos != null) {
+            this.byPosition.remove(pos.asLong(), section);
+            this.invalidated.remove(pos.asLong(), section);
         }
     }
 
@@ -65,7 +225,24 @@ public class ClonedChunkSectionCache {
         return new ClonedChunkSection(this);
     }
 
-    private void tryReclaim(ClonedChunkSection section) {
-        this.inactivePool.add(section);
+    /**
+     * @return The number of times a cached clone was re-used
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return The number of times a section had to be cloned
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return The estimated number of bytes used by all cloned sections
+     */
+    public synchronized long getMemoryUsage() {
+        return this.memoryUsage;
     }
 }
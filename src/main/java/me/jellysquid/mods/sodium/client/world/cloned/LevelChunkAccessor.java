@@ -0,0 +1,15 @@
+package me.jellysquid.mods.sodium.client.world.cloned;
+
+import net.minecraft.world.level.chunk.LevelChunk;
+
+public interface LevelChunkAccessor {
+    static int getBlockEntityModificationCount(LevelChunk chunk) {
+        return ((LevelChunkAccessor) chunk).getBlockEntityModificationCount();
+    }
+
+    /**
+     * @return A counter which is incremented both before and after every modification of the chunk's block entity map,
+     * so that it is odd while a modification is in progress
+     */
+    int getBlockEntityModificationCount();
+}
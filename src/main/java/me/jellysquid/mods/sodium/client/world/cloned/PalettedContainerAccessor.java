@@ -9,5 +9,15 @@ public interface PalettedContainerAccessor<T> {
         return ((PalettedContainerAccessor<T>) container).getData();
     }
 
+    @SuppressWarnings("unchecked")
+    static <T> int getModificationCount(PalettedContainer<T> container) {
+        return ((PalettedContainerAccessor<T>) container).getModificationCount();
+    }
+
     PalettedContainer.Data<T> getData();
+
+    /**
+     * @return A counter which is incremented after every modification of the container's contents
+     */
+    int getModificationCount();
 }
@@ -7,6 +7,7 @@ import java.util.LinkedList;
 import java.util.NoSuchElementException;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.BooleanSupplier;
 
 public class WorkStealingFutureDrain<T> implements Iterator<T> {
@@ -48,6 +49,10 @@ public class WorkStealingFutureDrain<T> implements Iterator<T> {
                 } catch (CancellationException e) {
                     SodiumClientMod.logger()
                             .warn("Future was cancelled: {}", future);
+                } catch (CompletionException e) {
+                    // The producer of the future is responsible for handling the failure, so just skip its result
+                    SodiumClientMod.logger()
+                            .warn("Future completed exceptionally: {}", future, e.getCause());
                 }
             }
 
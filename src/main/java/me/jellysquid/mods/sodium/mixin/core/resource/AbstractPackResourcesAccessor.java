@@ -0,0 +1,13 @@
+package me.jellysquid.mods.sodium.mixin.core.resource;
+
+import net.minecraft.server.packs.AbstractPackResources;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import java.io.File;
+
+@Mixin(AbstractPackResources.class)
+public interface AbstractPackResourcesAccessor {
+    @Accessor
+    File getFile();
+}
@@ -0,0 +1,39 @@
+package me.jellysquid.mods.sodium.mixin.features.chunk_rendering;
+
+import me.jellysquid.mods.sodium.client.world.cloned.LevelChunkAccessor;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.chunk.LevelChunk;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(LevelChunk.class)
+public class MixinLevelChunk implements LevelChunkAccessor {
+    // Only written by the thread which owns the chunk, and read by worker threads to detect whether the block entity
+    // map was modified while they were copying it
+    @Unique
+    private volatile int blockEntityModificationCount;
+
+    @Override
+    public int getBlockEntityModificationCount() {
+        return this.blockEntityModificationCount;
+    }
+
+    @Inject(method = "setBlockEntity", at = {@At("HEAD"), @At("RETURN")})
+    private void onSetBlockEntity(BlockEntity blockEntity, CallbackInfo ci) {
+        this.blockEntityModificationCount++;
+    }
+
+    @Inject(method = "removeBlockEntity", at = {@At("HEAD"), @At("RETURN")})
+    private void onRemoveBlockEntity(BlockPos pos, CallbackInfo ci) {
+        this.blockEntityModificationCount++;
+    }
+
+    @Inject(method = "clearAllBlockEntities", at = {@At("HEAD"), @At("RETURN")})
+    private void onClearAllBlockEntities(CallbackInfo ci) {
+        this.blockEntityModificationCount++;
+    }
+}
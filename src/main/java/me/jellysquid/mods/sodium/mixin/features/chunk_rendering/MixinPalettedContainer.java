@@ -1,17 +1,48 @@
 package me.jellysquid.mods.sodium.mixin.features.chunk_rendering;
 
 import me.jellysquid.mods.sodium.client.world.cloned.PalettedContainerAccessor;
+import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.world.level.chunk.PalettedContainer;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(PalettedContainer.class)
 public class MixinPalettedContainer<T> implements PalettedContainerAccessor<T> {
     @Shadow
     private PalettedContainer.Data<T> data;
 
+    // Incremented after the contents have been written, so that any thread which sees the new count also sees the
+    // modified contents
+    @Unique
+    private volatile int modificationCount;
+
     @Override
     public PalettedContainer.Data<T> getData() {
         return this.data;
     }
+
+    @Override
+    public int getModificationCount() {
+        return this.modificationCount;
+    }
+
+    @Inject(method = "getAndSet(ILjava/lang/Object;)Ljava/lang/Object;", at = @At("RETURN"))
+    private void postGetAndSet(int index, T value, CallbackInfoReturnable<T> cir) {
+        this.modificationCount++;
+    }
+
+    @Inject(method = "set(ILjava/lang/Object;)V", at = @At("RETURN"))
+    private void postSet(int index, T value, CallbackInfo ci) {
+        this.modificationCount++;
+    }
+
+    @Inject(method = "read", at = @At("RETURN"))
+    private void postRead(FriendlyByteBuf buf, CallbackInfo ci) {
+        this.modificationCount++;
+    }
 }
@@ -125,7 +125,11 @@ public abstract class MixinWorldRenderer implements WorldRendererExtended {
      */
     @Overwrite
     public void setBlocksDirty(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
-        this.renderer.scheduleRebuildForBlockArea(minX, minY, minZ, maxX, maxY, maxZ, false);
+        if (minX == maxX && minY == maxY && minZ == maxZ) {
+            this.renderer.scheduleRebuildForBlock(minX, minY, minZ, 0, false);
+        } else {
+            this.renderer.scheduleRebuildForBlockArea(minX, minY, minZ, maxX, maxY, maxZ, false);
+        }
     }
 
     /**
@@ -143,7 +147,7 @@ public abstract class MixinWorldRenderer implements WorldRendererExtended {
      */
     @Overwrite
     private void setBlockDirty(BlockPos pos, boolean important) {
-        this.renderer.scheduleRebuildForBlockArea(pos.getX() - 1, pos.getY() - 1, pos.getZ() - 1, pos.getX() + 1, pos.getY() + 1, pos.getZ() + 1, important);
+        this.renderer.scheduleRebuildForBlock(pos.getX(), pos.getY(), pos.getZ(), 1, important);
     }
 
     /**